@@ -2,8 +2,10 @@ package com.game.alipetek;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class AlipetekApplication {
 
     public static void main(String[] args) {
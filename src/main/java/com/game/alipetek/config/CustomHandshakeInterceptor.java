@@ -29,6 +29,11 @@ public class CustomHandshakeInterceptor implements HandshakeInterceptor {
             WebSocketHandler wsHandler,
             Map<String, Object> attributes
     ) {
+        // Lets the STOMP rate limit key messages by client address as well
+        if (request.getRemoteAddress() != null) {
+            attributes.put("ip", request.getRemoteAddress().getAddress().getHostAddress());
+        }
+
         if (request instanceof ServletServerHttpRequest) {
             ServletServerHttpRequest servletRequest = (ServletServerHttpRequest) request;
             String token = servletRequest.getServletRequest().getHeader("Authorization");
@@ -36,9 +41,8 @@ public class CustomHandshakeInterceptor implements HandshakeInterceptor {
             if (token != null && token.startsWith("Bearer ")) {
                 token = token.substring(7);
                 try {
-                    String username = jwtService.extractUsername(token);
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    if (username != null && jwtService.isTokenValid(token, userDetails)) {
+                    String username = jwtService.verifyToken(token).getSubject();
+                    if (username != null) {
                         attributes.put("username", username);
                         log.info("WebSocket handshake: Added username {} to attributes", username);
                         return true;
@@ -17,18 +17,37 @@ public class EmailConfiguration {
     @Value("${spring.mail.password}")
     private String emailPassword;
 
+    // Point these at a local fake SMTP server to exercise the outbox without real mail
+    @Value("${spring.mail.host:smtp.gmail.com}")
+    private String emailHost;
+
+    @Value("${spring.mail.port:587}")
+    private int emailPort;
+
+    @Value("${spring.mail.properties.mail.smtp.auth:true}")
+    private boolean smtpAuth;
+
+    @Value("${spring.mail.properties.mail.smtp.starttls.enable:true}")
+    private boolean smtpStartTls;
+
+    @Value("${mail.smtp.timeout-ms:10000}")
+    private int smtpTimeoutMillis;
+
     @Bean
     public JavaMailSender javaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost("smtp.gmail.com");
-        mailSender.setPort(587);
+        mailSender.setHost(emailHost);
+        mailSender.setPort(emailPort);
         mailSender.setUsername(emailUsername);
         mailSender.setPassword(emailPassword);
 
         Properties props = mailSender.getJavaMailProperties();
         props.put("mail.transport.protocol", "smtp");
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
+        props.put("mail.smtp.auth", String.valueOf(smtpAuth));
+        props.put("mail.smtp.starttls.enable", String.valueOf(smtpStartTls));
+        props.put("mail.smtp.connectiontimeout", String.valueOf(smtpTimeoutMillis));
+        props.put("mail.smtp.timeout", String.valueOf(smtpTimeoutMillis));
+        props.put("mail.smtp.writetimeout", String.valueOf(smtpTimeoutMillis));
         props.put("mail.debug", "true");
 
         return mailSender;
@@ -0,0 +1,54 @@
+package com.game.alipetek.config;
+
+import com.game.alipetek.service.RateLimitService;
+import io.micrometer.common.lang.NonNull;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Runs right after JwtAuthenticationFilter so the user is already known
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String SOCKJS_ENDPOINT = "/ws/";
+
+    private final RateLimitService rateLimitService;
+
+    public RateLimitFilter(RateLimitService rateLimitService) {
+        this.rateLimitService = rateLimitService;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication != null && authentication.isAuthenticated() ? authentication.getName() : null;
+
+        if (!rateLimitService.allowRequest(username, request.getRemoteAddr())) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.getWriter().write("Rate limit exceeded. Try again later.");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    // SockJS transport requests (/ws/{server}/{session}/{transport}) carry STOMP frames,
+    // which the inbound channel interceptor already charges one by one
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith(SOCKJS_ENDPOINT) && path.split("/").length >= 5;
+    }
+}
@@ -1,11 +1,14 @@
 package com.game.alipetek.config;
 
 import com.game.alipetek.service.JwtService;
+import com.game.alipetek.service.RateLimitService;
 import com.game.alipetek.service.UserDetailsServiceImpl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
@@ -29,15 +32,27 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtService jwtService;
     private final UserDetailsServiceImpl userDetailsService;
+    private final RateLimitService rateLimitService;
+
+    // Same switch that moves Tomcat request handling onto virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Upper bound on STOMP messages dispatched at once in virtual thread mode
+    @Value("${app.websocket.inbound-concurrency:512}")
+    private int inboundConcurrency;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker( "/topic");
+        registry.enableSimpleBroker( "/topic", "/queue");
+        registry.setUserDestinationPrefix("/user");
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Inbound dispatch no longer runs on a small fixed pool, so ordering per session is kept explicitly
+        registry.setPreserveReceiveOrder(virtualThreads);
         registry.addEndpoint("/ws")
                 .addInterceptors(new CustomHandshakeInterceptor(jwtService, userDetailsService))
                 .setAllowedOrigins("http://localhost:3000")
@@ -46,6 +61,14 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-inbound-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(inboundConcurrency);
+            registration.executor(executor);
+            log.info("Dispatching inbound STOMP messages on virtual threads, at most {} at a time", inboundConcurrency);
+        }
+
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -57,12 +80,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
                     if (token != null && token.startsWith("Bearer ")) {
                         token = token.substring(7);
-                        String username = jwtService.extractUsername(token);
-
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                        String username = jwtService.verifyToken(token).getSubject();
 
-                        if (username != null && jwtService.isTokenValid(token, userDetails)) {
-                            //UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                        if (username != null) {
+                            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
                             UsernamePasswordAuthenticationToken authentication =
                                     new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
@@ -72,6 +93,15 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         }
                     }
                 }
+
+                // Over the limit messages are dropped, the session itself stays open
+                if (StompCommand.SEND.equals(accessor.getCommand())) {
+                    Object ip = accessor.getSessionAttributes() != null ? accessor.getSessionAttributes().get("ip") : null;
+                    String username = accessor.getUser() != null ? accessor.getUser().getName() : null;
+                    if (!rateLimitService.allowMessage(username, ip != null ? ip.toString() : null)) {
+                        return null;
+                    }
+                }
                 return message;
             }
         });
@@ -2,9 +2,11 @@ package com.game.alipetek.config;
 
 import com.game.alipetek.model.Game;
 import com.game.alipetek.model.GameStatusEnum;
-import com.game.alipetek.model.User;
+import com.game.alipetek.service.GameMoveExecutor;
 import com.game.alipetek.service.GameService;
-import com.game.alipetek.service.UserService;
+import com.game.alipetek.service.GameStatePublisher;
+import com.game.alipetek.service.PendingForfeits;
+import com.game.alipetek.service.SocketSessionRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
@@ -13,7 +15,10 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
+import java.security.Principal;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -21,56 +26,114 @@ import java.util.Map;
 @Slf4j
 public class WebSocketEventListener {
 
+    private static final List<String> GAME_TOPIC_PREFIXES = List.of(
+            "/topic/game-state/", "/topic/game-progress/", "/topic/dice-rolled/", "/topic/game/");
+
+    private static final String USER_GAME_STATE_QUEUE = "/user" + GameStatePublisher.GAME_STATE_QUEUE;
+
     private final SimpMessageSendingOperations messageTemplate;
     private final GameService gameService;
-    private final UserService userService;
-
-    //private final SessionRegistry sessionRegistry;
+    private final SocketSessionRegistry socketSessionRegistry;
+    private final PendingForfeits pendingForfeits;
+    private final GameMoveExecutor gameMoveExecutor;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String sessionId = headerAccessor.getSessionId();
-        String username = headerAccessor.getUser().getName();
+        String username = usernameOf(event.getUser());
 
         log.info("User {} connected with session ID: {}", username, sessionId);
 
-        //sessionRegistry.registerSessionId(username, sessionId);
+        socketSessionRegistry.register(sessionId, username);
+
+        // Back within the grace period: keep playing and resend the state once the user queue is subscribed
+        pendingForfeits.cancel(username).ifPresent(gameId -> {
+            log.info("User {} reconnected to game {}", username, gameId);
+            socketSessionRegistry.bindGame(sessionId, username, gameId);
+            socketSessionRegistry.markResync(sessionId);
+        });
     }
 
     @EventListener
-    public void handleWebSocketDisconnectListener(SessionDisconnectEvent disconnectEvent) {
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(disconnectEvent.getMessage());
+    public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        String username = usernameOf(event.getUser());
         String sessionId = headerAccessor.getSessionId();
-        String disconnectedUsername = headerAccessor.getUser().getName();
+        if (username != null && USER_GAME_STATE_QUEUE.equals(headerAccessor.getDestination())
+                && socketSessionRegistry.claimResync(sessionId)) {
+            socketSessionRegistry.find(sessionId)
+                    .ifPresent(session -> gameService.resendSnapshot(session.getGameId(), username, sessionId));
+            return;
+        }
+
+        Long gameId = gameIdOf(headerAccessor.getDestination());
+        if (username == null || gameId == null) {
+            return;
+        }
+
+        // Only players are bound to a game, spectators just watch
+        Game game = gameService.findLiveGame(gameId);
+        if (game != null && game.getPlayers().stream().anyMatch(player -> player.getUsername().equals(username))) {
+            socketSessionRegistry.bindGame(sessionId, username, gameId);
+        }
+    }
+
+    @EventListener
+    public void handleWebSocketDisconnectListener(SessionDisconnectEvent disconnectEvent) {
+        String sessionId = disconnectEvent.getSessionId();
+        SocketSessionRegistry.SocketSession session = socketSessionRegistry.remove(sessionId).orElse(null);
+        String disconnectedUsername = session != null ? session.getUsername() : usernameOf(disconnectEvent.getUser());
 
         if (disconnectedUsername != null) {
             log.info("User {} disconnected from session {}", disconnectedUsername, sessionId);
-            try {
-                Game game = gameService.getGameBySessionId(sessionId);
-                if (game != null && game.getGameStatusEnum() != GameStatusEnum.FINISHED) {
-                    User remainingUser = game.getFirstUser().getUsername().equals(disconnectedUsername)
-                            ? game.getSecondUser()
-                            : game.getFirstUser();
-
-                    userService.setDisconnectScore(remainingUser);
-
-                    game.setGameStatusEnum(GameStatusEnum.FINISHED);
-                    game.setWinner(remainingUser);
-                    gameService.saveGame(game);
-
-                    messageTemplate.convertAndSend("/topic/game/" + game.getId(),
-                            Map.of(
-                                    "type", "PLAYER_DISCONNECTED",
-                                    "game", game,
-                                    "disconnectedPlayer", disconnectedUsername
-                            )
-                    );
+            Game game = session != null ? gameService.findLiveGame(session.getGameId()) : null;
+            if (game != null && game.getGameStatusEnum() != GameStatusEnum.FINISHED
+                    && !hasOtherSessionInGame(disconnectedUsername, game.getId())) {
+                pendingForfeits.schedule(game.getId(), disconnectedUsername, this::forfeit);
+            }
+        }
+    }
+
+    // Called from the timer wheel thread, so the forfeit itself runs in the game's move mailbox
+    private void forfeit(Long gameId, String disconnectedUsername) {
+        gameMoveExecutor.submit(gameId, () -> {
+            Game forfeited = gameService.forfeitGame(gameId, disconnectedUsername);
+            if (forfeited != null) {
+                messageTemplate.convertAndSend("/topic/game/" + forfeited.getId(),
+                        Map.of(
+                                "type", "PLAYER_DISCONNECTED",
+                                "gameId", forfeited.getId(),
+                                "disconnectedPlayer", disconnectedUsername
+                        )
+                );
+            }
+        });
+    }
+
+    private boolean hasOtherSessionInGame(String username, Long gameId) {
+        return socketSessionRegistry.getSessionIds(username).stream()
+                .map(socketSessionRegistry::find)
+                .anyMatch(other -> other.map(s -> gameId.equals(s.getGameId())).orElse(false));
+    }
+
+    private static String usernameOf(Principal principal) {
+        return principal != null ? principal.getName() : null;
+    }
+
+    private static Long gameIdOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        for (String prefix : GAME_TOPIC_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                try {
+                    return Long.valueOf(destination.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    return null;
                 }
-            } catch (Exception e) {
-                log.error("Error handling disconnect for user {}: {}", disconnectedUsername, e.getMessage());
             }
-            //sessionRegistry.removeSession(sessionId);
         }
+        return null;
     }
 }
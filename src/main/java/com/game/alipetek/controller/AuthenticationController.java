@@ -6,6 +6,7 @@ import com.game.alipetek.model.User;
 import com.game.alipetek.service.AuthenticationService;
 import com.game.alipetek.service.JwtService;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 @RequestMapping("/auth")
@@ -38,7 +39,7 @@ public class AuthenticationController {
     @PostMapping("/google/login")
     public ResponseEntity<LoginResponse> googleLogin(@RequestBody GoogleLoginRequest googleLoginRequest) {
         try {
-            User authenticatedUser = authenticationService.authenticateWithGoogle(googleLoginRequest.getCredential());
+            UserDetails authenticatedUser = authenticationService.authenticateWithGoogle(googleLoginRequest.getCredential());
             String jwtToken = jwtService.generateToken(authenticatedUser);
             LoginResponse loginResponse = new LoginResponse(jwtToken, jwtService.getExpirationTime());
             loginResponse.setUsername(authenticatedUser.getUsername());
@@ -1,26 +1,34 @@
 package com.game.alipetek.controller;
 
+import com.game.alipetek.dto.AnswerVerdict;
 import com.game.alipetek.dto.CreateGameRequest;
 import com.game.alipetek.dto.GamePlay;
+import com.game.alipetek.dto.GameAudience;
 import com.game.alipetek.dto.JoinFriendsGameRequest;
 import com.game.alipetek.exception.InvalidGameException;
 import com.game.alipetek.exception.NotFoundException;
+import com.game.alipetek.exception.StaleMoveException;
 import com.game.alipetek.exception.WrongAnswerException;
 import com.game.alipetek.model.*;
+import com.game.alipetek.service.GameAudienceTracker;
 import com.game.alipetek.service.GameService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.security.Principal;
+import java.util.List;
 
 @RestController
 @Slf4j
@@ -28,11 +36,15 @@ import java.util.Map;
 public class GameController {
 
     private final GameService gameService;
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final GameAudienceTracker gameAudienceTracker;
 
-    public GameController(GameService gameService, SimpMessagingTemplate simpMessagingTemplate) {
+    // Full Game broadcasts on the original topics, kept for clients that do not read /topic/game-state yet
+    @Value("${game.broadcast.legacy-enabled:true}")
+    private boolean legacyBroadcastEnabled;
+
+    public GameController(GameService gameService, GameAudienceTracker gameAudienceTracker) {
         this.gameService = gameService;
-        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.gameAudienceTracker = gameAudienceTracker;
     }
 
     @GetMapping("/{id}")
@@ -41,10 +53,33 @@ public class GameController {
         return ResponseEntity.ok(game);
     }
 
+    @GetMapping("/{id}/state")
+    public ResponseEntity<byte[]> getGameState(@PathVariable Long id) throws NotFoundException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(gameService.getGameState(id));
+    }
+
+    // Players and spectators alike fetch the current snapshot here, then follow /topic/game-state/{gameId}
+    @SubscribeMapping("/game-state/{gameId}")
+    public byte[] subscribeGameState(@DestinationVariable Long gameId) throws NotFoundException {
+        return gameService.getGameState(gameId);
+    }
+
+    @GetMapping("/{id}/audience")
+    public ResponseEntity<GameAudience> getGameAudience(@PathVariable Long id) {
+        return ResponseEntity.ok(gameAudienceTracker.getAudience(id));
+    }
+
+    @GetMapping("/most-watched")
+    public ResponseEntity<List<GameAudience>> getMostWatchedGames(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(gameAudienceTracker.getMostWatched(Math.min(limit, 100)));
+    }
+
     @PostMapping("/create")
     public ResponseEntity<Game> createGame(@RequestBody CreateGameRequest createGameRequest) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
 
         log.info("create game request: {} with sessionId: {}", currentUser.getUsername(), createGameRequest.getSessionId());
         Game game = gameService.createGame(currentUser.getUsername(), createGameRequest.getSessionId());
@@ -56,14 +91,11 @@ public class GameController {
     @PostMapping("/connect/random")
     public ResponseEntity<Game> joinRandomGame(@RequestBody CreateGameRequest createGameRequest) throws InvalidGameException, NotFoundException {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         log.info("join random game request: {}", currentUser.getUsername());
-        Game game = gameService.connectToRandomGame(currentUser.getUsername());
-        game.setSecondSessionId(createGameRequest.getSessionId());
-        gameService.saveGame(game);
+        Game game = gameService.connectToRandomGame(currentUser.getUsername(), createGameRequest.getSessionId());
         if (game.getGameStatusEnum() == GameStatusEnum.IN_PROGRESS) {
-            GameStateUpdate update = new GameStateUpdate(game, System.currentTimeMillis() + 5000);
-            broadcastGameUpdate(game, update.getStartTimestamp());
+            broadcastGameUpdate(game, game.getStartTimestamp());
         } else {
             broadcastGameUpdate(game, null);
         }
@@ -73,15 +105,12 @@ public class GameController {
     @PostMapping("/connect")
     public ResponseEntity<Game> joinFriendsGame(@RequestBody JoinFriendsGameRequest joinFriendsGameRequest) throws InvalidGameException, NotFoundException {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         log.info("join friend's game request: {}", currentUser.getUsername());
         joinFriendsGameRequest.setUsername(currentUser.getUsername());
         Game game = gameService.connectToFriendsGame(joinFriendsGameRequest);
-        game.setSecondSessionId(joinFriendsGameRequest.getSessionId());
-        gameService.saveGame(game);
         if (game.getGameStatusEnum() == GameStatusEnum.IN_PROGRESS) {
-            GameStateUpdate update = new GameStateUpdate(game, System.currentTimeMillis() + 5000);
-            broadcastGameUpdate(game, update.getStartTimestamp());
+            broadcastGameUpdate(game, game.getStartTimestamp());
         } else {
             broadcastGameUpdate(game, null);
         }
@@ -89,21 +118,45 @@ public class GameController {
     }
 
     @PostMapping("/gameplay")
-    public ResponseEntity<Game> gamePlay(@RequestBody GamePlay gamePlay) throws InvalidGameException, NotFoundException, WrongAnswerException {
+    public ResponseEntity<Game> gamePlay(@RequestBody GamePlay gamePlay) throws InvalidGameException, NotFoundException, WrongAnswerException, StaleMoveException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        gamePlay.setUsername(currentUser.getUsername());
         try {
             Game game = gameService.gamePlay(gamePlay);
-
-            if (game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
-                simpMessagingTemplate.convertAndSend("/topic/game-progress/" + game.getId(), game);
-            } else {
-                simpMessagingTemplate.convertAndSend("/topic/dice-rolled/" + game.getId(), game);
-            }
-
+            broadcastAnswer(game);
             return ResponseEntity.ok(game);
         } catch (InvalidGameException | NotFoundException e) {
             return ResponseEntity.badRequest().build();
         } catch (WrongAnswerException e) {
             return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+        } catch (StaleMoveException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    // Same move as /gameplay for players already on a STOMP session, the verdict only goes back to the sender
+    @MessageMapping("/answer/{gameId}")
+    @SendToUser(value = "/queue/answers", broadcast = false)
+    public AnswerVerdict submitAnswer(@DestinationVariable Long gameId, @Payload GamePlay gamePlay, Principal principal) {
+        if (principal == null) {
+            return AnswerVerdict.rejected(gameId, "Not authenticated");
+        }
+
+        gamePlay.setGameId(gameId);
+        gamePlay.setUsername(principal.getName());
+        try {
+            Game game = gameService.gamePlay(gamePlay);
+            broadcastAnswer(game);
+            return AnswerVerdict.correct(gameId, game.getStateVersion());
+        } catch (WrongAnswerException e) {
+            return AnswerVerdict.wrong(gameId);
+        } catch (StaleMoveException e) {
+            return AnswerVerdict.stale(gameId, e.getCurrentVersion());
+        } catch (InvalidGameException e) {
+            return AnswerVerdict.rejected(gameId, "Game is not accepting answers");
+        } catch (NotFoundException e) {
+            return AnswerVerdict.rejected(gameId, "Game not found");
         }
     }
 
@@ -113,44 +166,38 @@ public class GameController {
         return gameService.getGameById(gameId);
     }
 
+    // Answered by WrongGuessCounters, which sends at most one update per broadcast tick to /topic/wrong-guesses/{gameId}
     @MessageMapping("/wrong-guess/{gameId}")
-    @SendTo("/topic/wrong-guesses/{gameId}")
-    public Map<String, Integer> handleWrongGuess(@DestinationVariable Long gameId, WrongGuessMessage message) {
+    public void handleWrongGuess(@DestinationVariable Long gameId, WrongGuessMessage message) {
         try {
-            log.info("Handling wrong guess for game {} from player {}", gameId, message.getPlayer());
-
             if (message.getPlayer() == null || message.getPlayer().trim().isEmpty()) {
                 log.error("Invalid player in wrong guess message");
-                return new HashMap<String, Integer>() {{
-                    put("firstUser", 0);
-                    put("secondUser", 0);
-                }};
+                return;
             }
 
-            Game game = gameService.getGameById(gameId);
-            game.incrementWrongGuesses(message.getPlayer().trim());
-            game = gameService.updateGame(game);
-
-            Map<String, Integer> wrongGuesses = game.getWrongGuesses();
-            log.info("Updated wrong guesses for game {}: {}", gameId, wrongGuesses);
-            return wrongGuesses;
-
+            gameService.handleWrongGuess(gameId, message.getPlayer().trim());
         } catch (Exception e) {
             log.error("Error handling wrong guess for game {}: {}", gameId, e.getMessage(), e);
-            return new HashMap<String, Integer>() {{
-                put("firstUser", 0);
-                put("secondUser", 0);
-            }};
+        }
+    }
+
+    // /topic/game-state already carries the move, this only feeds the legacy topics
+    private void broadcastAnswer(Game game) {
+        if (legacyBroadcastEnabled) {
+            if (game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
+                gameService.sendLegacyUpdate("/topic/game-progress/" + game.getId(), game);
+            } else {
+                gameService.sendLegacyUpdate("/topic/dice-rolled/" + game.getId(), game);
+            }
         }
     }
 
     private void broadcastGameUpdate(Game game, Long startTimestamp) {
-        if (game != null && game.getId() != null) {
+        if (legacyBroadcastEnabled && game != null && game.getId() != null) {
             log.info("Broadcasting game update for game: {}, status: {}, startTimestamp: {}",
                     game.getId(), game.getGameStatusEnum(), startTimestamp);
 
-            GameStateUpdate update = new GameStateUpdate(game, startTimestamp);
-            simpMessagingTemplate.convertAndSend("/topic/game-progress/" + game.getId(), update);
+            gameService.sendLegacyUpdate("/topic/game-progress/" + game.getId(), new GameStateUpdate(game, startTimestamp));
         }
     }
 }
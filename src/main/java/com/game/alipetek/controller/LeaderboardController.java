@@ -0,0 +1,79 @@
+package com.game.alipetek.controller;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.dto.LeaderboardPeriodSummary;
+import com.game.alipetek.model.LeaderboardWindowEnum;
+import com.game.alipetek.model.UserPrincipal;
+import com.game.alipetek.service.LeaderboardService;
+import com.game.alipetek.service.WindowedLeaderboards;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/leaderboard")
+public class LeaderboardController {
+
+    private final LeaderboardService leaderboardService;
+    private final WindowedLeaderboards windowedLeaderboards;
+
+    public LeaderboardController(LeaderboardService leaderboardService, WindowedLeaderboards windowedLeaderboards) {
+        this.leaderboardService = leaderboardService;
+        this.windowedLeaderboards = windowedLeaderboards;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<LeaderboardEntry>> getLeaderboard(@RequestParam(defaultValue = "0") int page,
+                                                                 @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(leaderboardService.getPage(page, size));
+    }
+
+    @GetMapping("/me")
+    public ResponseEntity<LeaderboardEntry> getMyRank() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.of(leaderboardService.getRank(currentUser.getId()));
+    }
+
+    @GetMapping("/around")
+    public ResponseEntity<List<LeaderboardEntry>> getAroundMe(@RequestParam(defaultValue = "5") int radius) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.ok(leaderboardService.getAround(currentUser.getId(), radius));
+    }
+
+    // Points earned in the current DAILY, WEEKLY or SEASON period
+    @GetMapping("/{window}")
+    public ResponseEntity<List<LeaderboardEntry>> getWindowLeaderboard(@PathVariable LeaderboardWindowEnum window,
+                                                                       @RequestParam(defaultValue = "0") int page,
+                                                                       @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(windowedLeaderboards.getPage(window, page, size));
+    }
+
+    @GetMapping("/{window}/me")
+    public ResponseEntity<LeaderboardEntry> getMyWindowRank(@PathVariable LeaderboardWindowEnum window) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.of(windowedLeaderboards.getRank(window, currentUser.getId()));
+    }
+
+    @GetMapping("/{window}/around")
+    public ResponseEntity<List<LeaderboardEntry>> getAroundMeInWindow(@PathVariable LeaderboardWindowEnum window,
+                                                                      @RequestParam(defaultValue = "5") int radius) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.ok(windowedLeaderboards.getAround(window, currentUser.getId(), radius));
+    }
+
+    @GetMapping("/{window}/history")
+    public ResponseEntity<List<LeaderboardPeriodSummary>> getWindowHistory(@PathVariable LeaderboardWindowEnum window) {
+        return ResponseEntity.ok(windowedLeaderboards.getHistory(window));
+    }
+}
@@ -4,7 +4,7 @@ package com.game.alipetek.controller;
 import com.game.alipetek.dto.UpdateUserAvatarDto;
 import com.game.alipetek.model.Game;
 import com.game.alipetek.model.User;
-import com.game.alipetek.repository.UserRepository;
+import com.game.alipetek.model.UserPrincipal;
 import com.game.alipetek.service.GameService;
 import com.game.alipetek.service.UserService;
 import lombok.extern.slf4j.Slf4j;
@@ -31,23 +31,21 @@ public class ProfileController {
     @GetMapping
     public ResponseEntity<User> getUserProfile() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         return ResponseEntity.ok(userService.getUserByUsername(currentUser.getUsername()));
     }
 
     @GetMapping("/prevGames")
     public ResponseEntity<List<Game>> getPreviousGames() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         return ResponseEntity.ok(gameService.getPreviousGamesByUsername(currentUser.getUsername()));
     }
 
     @PostMapping("/updateAvatar")
     public ResponseEntity<User> updateUserAvatar(@RequestBody UpdateUserAvatarDto updateUserAvatarDto) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
-        currentUser.setAvatarUrl(updateUserAvatarDto.getAvatarUrl());
-        userService.saveUser(currentUser);
-        return ResponseEntity.ok(currentUser);
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.ok(userService.updateAvatar(currentUser.getUsername(), updateUserAvatarDto.getAvatarUrl()));
     }
 }
@@ -2,7 +2,7 @@ package com.game.alipetek.controller;
 
 import com.game.alipetek.dto.SaveRecommendQuestionRequest;
 import com.game.alipetek.model.RecommendQuestion;
-import com.game.alipetek.model.User;
+import com.game.alipetek.model.UserPrincipal;
 import com.game.alipetek.service.RecommendQuestionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -27,7 +27,7 @@ public class QuestionRecommendController {
     @PostMapping("/create")
     public ResponseEntity<RecommendQuestion> saveRecommendQuestion(@RequestBody SaveRecommendQuestionRequest request) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         request.setUsername(currentUser.getUsername());
 
         return ResponseEntity.ok(recommendQuestionService.saveRecommendQuestion(request));
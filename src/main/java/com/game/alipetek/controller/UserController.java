@@ -2,7 +2,9 @@ package com.game.alipetek.controller;
 
 import com.game.alipetek.dto.AddFriendRequest;
 import com.game.alipetek.dto.CreateUserRequest;
+import com.game.alipetek.dto.LeaderboardEntry;
 import com.game.alipetek.model.User;
+import com.game.alipetek.model.UserPrincipal;
 import com.game.alipetek.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -31,7 +33,7 @@ public class UserController {
     @PostMapping("/addFriend")
     public ResponseEntity<User> addFriend(@RequestBody AddFriendRequest addFriendRequest) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         log.info("add friend request: {}", currentUser.getUsername());
         return ResponseEntity.ok(userService.addFriend(addFriendRequest.getUsername(), currentUser.getUsername()));
     }
@@ -39,7 +41,7 @@ public class UserController {
     @PostMapping("/removeFriend")
     public ResponseEntity<User> removeFriend(@RequestBody AddFriendRequest addFriendRequest) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         log.info("remove friend request: {}", currentUser.getUsername());
         return ResponseEntity.ok(userService.removeFriend(addFriendRequest.getUsername(), currentUser.getUsername()));
     }
@@ -50,21 +52,22 @@ public class UserController {
     }
 
     @GetMapping("/getAllUsersByScore")
-    public ResponseEntity<List<User>> getAllUsersOrderByScore() {
-        return ResponseEntity.ok(userService.getAllUsersOrderByScore());
+    public ResponseEntity<List<LeaderboardEntry>> getAllUsersOrderByScore(@RequestParam(defaultValue = "0") int page,
+                                                                          @RequestParam(defaultValue = "100") int size) {
+        return ResponseEntity.ok(userService.getAllUsersOrderByScore(page, size));
     }
 
     @GetMapping("/profile")
     public ResponseEntity<User> getUserProfile() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
-        return ResponseEntity.ok(currentUser);
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.ok(userService.getUserByUsername(currentUser.getUsername()));
     }
 
     @PostMapping("/sharing-preference")
     public ResponseEntity<Boolean> updateLocationSharingPreference(@RequestParam boolean enabled) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
         boolean updated = userService.updatedUserLocationPreference(currentUser.getUsername(), enabled);
         return ResponseEntity.ok(updated);
     }
@@ -72,8 +75,8 @@ public class UserController {
     @GetMapping("/sharing-preference")
     public ResponseEntity<Boolean> getLocationSharingPreference() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
 
-        return ResponseEntity.ok(currentUser.isShareLocation());
+        return ResponseEntity.ok(userService.getUserByUsername(currentUser.getUsername()).isShareLocation());
     }
 }
@@ -1,9 +1,10 @@
 package com.game.alipetek.controller;
 
 import com.game.alipetek.dto.LocationUpdateRequest;
-import com.game.alipetek.model.User;
 import com.game.alipetek.model.UserLocation;
+import com.game.alipetek.model.UserPrincipal;
 import com.game.alipetek.service.UserLocationService;
+import com.game.alipetek.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,9 +17,11 @@ import java.util.List;
 public class UserLocationController {
 
     private final UserLocationService locationService;
+    private final UserService userService;
 
-    public UserLocationController(UserLocationService locationService) {
+    public UserLocationController(UserLocationService locationService, UserService userService) {
         this.locationService = locationService;
+        this.userService = userService;
     }
 
     @PostMapping("/update")
@@ -35,10 +38,11 @@ public class UserLocationController {
     @GetMapping("/online")
     public ResponseEntity<List<UserLocation>> getOnlineUsers() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        UserPrincipal currentUser = (UserPrincipal) authentication.getPrincipal();
 
         //List<UserLocation> userLocations = locationService.getOnlineUsers();
-        List<UserLocation> userLocations = locationService.getFriendOnlineUsers(currentUser);
+        // Needs the friends set, so this is one of the few places that loads the full User
+        List<UserLocation> userLocations = locationService.getFriendOnlineUsers(userService.getUserByUsername(currentUser.getUsername()));
         return ResponseEntity.ok(userLocations);
     }
 }
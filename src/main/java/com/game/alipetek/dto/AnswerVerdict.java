@@ -0,0 +1,43 @@
+package com.game.alipetek.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnswerVerdict {
+
+    public static final String CORRECT = "CORRECT";
+    public static final String WRONG = "WRONG";
+    public static final String REJECTED = "REJECTED";
+    public static final String STALE = "STALE";
+
+    private String verdict;
+    private Long gameId;
+    // State version after the answer was applied, matches the seq of the event on /topic/game-state
+    private Long version;
+    private String message;
+
+    public static AnswerVerdict correct(Long gameId, long version) {
+        return AnswerVerdict.builder().verdict(CORRECT).gameId(gameId).version(version).build();
+    }
+
+    public static AnswerVerdict wrong(Long gameId) {
+        return AnswerVerdict.builder().verdict(WRONG).gameId(gameId).build();
+    }
+
+    // The game moved on since the client answered, version tells it where the game is now
+    public static AnswerVerdict stale(Long gameId, long currentVersion) {
+        return AnswerVerdict.builder().verdict(STALE).gameId(gameId).version(currentVersion).build();
+    }
+
+    public static AnswerVerdict rejected(Long gameId, String message) {
+        return AnswerVerdict.builder().verdict(REJECTED).gameId(gameId).message(message).build();
+    }
+}
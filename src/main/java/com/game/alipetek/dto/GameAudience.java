@@ -0,0 +1,14 @@
+package com.game.alipetek.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GameAudience {
+    private Long gameId;
+    private int subscribers;
+    private int spectators;
+}
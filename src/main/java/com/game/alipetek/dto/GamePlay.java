@@ -8,4 +8,8 @@ public class GamePlay {
     private String userAnswer;
     private Long questionId;
     private Long gameId;
+    // Client generated, a retried move reuses the id of the original
+    private String moveId;
+    // State version the client saw when it answered, null skips the check
+    private Long expectedVersion;
 }
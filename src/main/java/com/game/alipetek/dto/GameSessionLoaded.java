@@ -0,0 +1,14 @@
+package com.game.alipetek.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Published when an in-progress game is read back from the database into a new session
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GameSessionLoaded {
+
+    private Long gameId;
+}
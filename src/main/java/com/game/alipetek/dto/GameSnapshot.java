@@ -0,0 +1,53 @@
+package com.game.alipetek.dto;
+
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.GameStatusEnum;
+import com.game.alipetek.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class GameSnapshot {
+    private Long gameId;
+    private GameStatusEnum status;
+    private String firstUser;
+    private String secondUser;
+    private int firstUserPoints;
+    private int secondUserPoints;
+    private String currentLetter;
+    private int currentDice;
+    private QuestionView currentQuestion;
+    private int firstUserWrongGuesses;
+    private int secondUserWrongGuesses;
+    private String winner;
+    private Long startTimestamp;
+    private Long questionDeadline;
+
+    public static GameSnapshot of(Game game) {
+        return GameSnapshot.builder()
+                .gameId(game.getId())
+                .status(game.getGameStatusEnum())
+                .firstUser(usernameOf(game.getFirstUser()))
+                .secondUser(usernameOf(game.getSecondUser()))
+                .firstUserPoints(game.getFirstUserPoints())
+                .secondUserPoints(game.getSecondUserPoints())
+                .currentLetter(game.getCurrentLetter())
+                .currentDice(game.getCurrentDice())
+                .currentQuestion(QuestionView.of(game.getCurrentQuestion()))
+                .firstUserWrongGuesses(game.getWrongGuesses().get("firstUser"))
+                .secondUserWrongGuesses(game.getWrongGuesses().get("secondUser"))
+                .winner(usernameOf(game.getWinner()))
+                .startTimestamp(game.getStartTimestamp())
+                .questionDeadline(game.getQuestionDeadline())
+                .build();
+    }
+
+    private static String usernameOf(User user) {
+        return user != null ? user.getUsername() : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.game.alipetek.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameStateEvent {
+
+    public static final String SNAPSHOT = "SNAPSHOT";
+    public static final String DELTA = "DELTA";
+
+    private String type;
+    private Long gameId;
+    // Equal to the game's state version, consecutive events differ by exactly one
+    private long seq;
+    // Both carry the same serialized GameSnapshot, the delta only the fields that changed
+    private JsonNode snapshot;
+    private JsonNode changes;
+
+    public static GameStateEvent snapshot(Long gameId, long seq, JsonNode snapshot) {
+        return GameStateEvent.builder()
+                .type(SNAPSHOT)
+                .gameId(gameId)
+                .seq(seq)
+                .snapshot(snapshot)
+                .build();
+    }
+
+    public static GameStateEvent delta(Long gameId, long seq, JsonNode changes) {
+        return GameStateEvent.builder()
+                .type(DELTA)
+                .gameId(gameId)
+                .seq(seq)
+                .changes(changes)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.game.alipetek.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardEntry {
+
+    private Long id;
+    // 1-based position, 0 for entries that are not ranked yet
+    private int rank;
+    private String username;
+    private String avatarUrl;
+    private int score;
+
+    // Used by the repository's constructor expression, ranks are assigned by the leaderboard
+    public LeaderboardEntry(Long id, String username, String avatarUrl, int score) {
+        this(id, 0, username, avatarUrl, score);
+    }
+}
@@ -0,0 +1,26 @@
+package com.game.alipetek.dto;
+
+import com.game.alipetek.model.LeaderboardWindowEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// What is kept of a finished leaderboard period once its full ranking is dropped
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardPeriodSummary {
+
+    private LeaderboardWindowEnum window;
+    private LocalDate periodStart;
+    // Exclusive
+    private LocalDate periodEnd;
+    private int players;
+    private long totalPoints;
+    private List<LeaderboardEntry> top;
+}
@@ -0,0 +1,22 @@
+package com.game.alipetek.dto;
+
+import com.game.alipetek.model.Question;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Sent to the two players only, spectators never learn anything about the answer
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuestionHint {
+    private Long gameId;
+    // State version the hint belongs to, matches the seq of the event on /topic/game-state
+    private long version;
+    private Long questionId;
+    private int answerLength;
+
+    public static QuestionHint of(Long gameId, long version, Question question) {
+        return new QuestionHint(gameId, version, question.getId(), question.getAnswer().length());
+    }
+}
@@ -0,0 +1,23 @@
+package com.game.alipetek.dto;
+
+import com.game.alipetek.model.Question;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Public view of the current question, the answer only ever reaches players as a QuestionHint
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuestionView {
+    private Long id;
+    private String text;
+    private int points;
+
+    public static QuestionView of(Question question) {
+        if (question == null) {
+            return null;
+        }
+        return new QuestionView(question.getId(), question.getText(), question.getPoints());
+    }
+}
@@ -0,0 +1,20 @@
+package com.game.alipetek.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Published once a batch of score increments is committed, and sent to the player's profile queue
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScoreChange {
+
+    private Long userId;
+    private String username;
+    private String avatarUrl;
+    // Points added since the previous change for this user
+    private int delta;
+    // Score in the database right after the increment
+    private int score;
+}
@@ -0,0 +1,15 @@
+package com.game.alipetek.exception;
+
+public class StaleMoveException extends Exception {
+
+    private final long currentVersion;
+
+    public StaleMoveException(long currentVersion) {
+        super("Move was made against an outdated game state");
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -1,10 +1,10 @@
 package com.game.alipetek.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -43,9 +43,10 @@ public class Game {
     @JoinColumn(name = "winner_id")
     private User winner;
 
-    @OneToMany(fetch = FetchType.EAGER)
-    @JoinColumn(name = "game_id")
-    private List<Question> questionList;
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "question_deck")
+    private long[] questionDeck;
 
     @Column(name = "first_session_id")
     private String firstSessionId;
@@ -75,6 +76,40 @@ public class Game {
     @Column(name = "finished_date")
     private LocalDateTime finishedDate;
 
+    @Column(name = "state_version")
+    private Long stateVersion;
+
+    @Transient
+    private Long startTimestamp;
+
+    // Epoch millis at which the current letter started counting, so its deadline survives a reload
+    @Column(name = "question_started_at")
+    private Long questionStartedAt;
+
+    // Epoch millis at which the current letter times out, kept by the server-side question timer
+    @Transient
+    private Long questionDeadline;
+
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient GameQuestionTable questionTable;
+
+    public long getStateVersion() {
+        return stateVersion != null ? stateVersion : 0L;
+    }
+
+    public long advanceStateVersion() {
+        stateVersion = getStateVersion() + 1;
+        return stateVersion;
+    }
+
+    public void setQuestionDeck(long[] questionDeck) {
+        this.questionDeck = questionDeck;
+        this.questionTable = null;
+    }
+
     public Map<String, Integer> getWrongGuesses() {
         Map<String, Integer> wrongGuesses = new HashMap<>();
         wrongGuesses.put("firstUser", firstUserWrongGuesses != null ? firstUserWrongGuesses : 0);
@@ -0,0 +1,65 @@
+package com.game.alipetek.model;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-game lookup of the deck by (letter, difficulty). Built once per game so that
+ * finding the next question is an array index instead of a scan over the deck.
+ */
+public final class GameQuestionTable {
+
+    private static final Question[] NO_QUESTIONS = new Question[0];
+
+    private final Question[][] slots;
+
+    private GameQuestionTable(Question[][] slots) {
+        this.slots = slots;
+    }
+
+    public static GameQuestionTable of(List<Question> questions) {
+        int[] counts = new int[QuestionSlots.COUNT];
+        if (questions != null) {
+            for (Question question : questions) {
+                int slot = QuestionSlots.of(question);
+                if (slot >= 0) {
+                    counts[slot]++;
+                }
+            }
+        }
+
+        Question[][] slots = new Question[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            slots[i] = counts[i] == 0 ? NO_QUESTIONS : new Question[counts[i]];
+        }
+
+        if (questions != null) {
+            int[] positions = new int[counts.length];
+            for (Question question : questions) {
+                int slot = QuestionSlots.of(question);
+                if (slot >= 0) {
+                    slots[slot][positions[slot]++] = question;
+                }
+            }
+        }
+
+        return new GameQuestionTable(slots);
+    }
+
+    public Question pick(char letter, QuestionDifficultyEnum difficulty) {
+        int slot = QuestionSlots.of(letter, difficulty);
+        if (slot < 0) {
+            return null;
+        }
+
+        Question[] candidates = slots[slot];
+        switch (candidates.length) {
+            case 0:
+                return null;
+            case 1:
+                return candidates[0];
+            default:
+                return candidates[ThreadLocalRandom.current().nextInt(candidates.length)];
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.game.alipetek.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Answer points a player earned on one day of the leaderboard zone, the windows are rebuilt from these at startup
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(LeaderboardDailyPoints.Key.class)
+@Table(name = "leaderboard_daily_points")
+public class LeaderboardDailyPoints {
+
+    // DAY is reserved in H2
+    @Id
+    @Column(name = "game_day", nullable = false)
+    private LocalDate day;
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private long points;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate day;
+        private Long userId;
+    }
+}
@@ -0,0 +1,49 @@
+package com.game.alipetek.model;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Summary of a finished leaderboard period, written once when the window rolls over
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "leaderboard_periods",
+        uniqueConstraints = @UniqueConstraint(name = "uk_leaderboard_periods_window_start", columnNames = {"window_type", "period_start"}))
+public class LeaderboardPeriod {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // WINDOW is a reserved word in Postgres
+    @Enumerated(EnumType.STRING)
+    @Column(name = "window_type", nullable = false)
+    private LeaderboardWindowEnum window;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDate periodEnd;
+
+    @Column(nullable = false)
+    private int players;
+
+    @Column(name = "total_points", nullable = false)
+    private long totalPoints;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "top_entries")
+    private List<LeaderboardEntry> top;
+}
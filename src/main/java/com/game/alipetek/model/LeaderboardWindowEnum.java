@@ -0,0 +1,5 @@
+package com.game.alipetek.model;
+
+public enum LeaderboardWindowEnum {
+    DAILY, WEEKLY, SEASON
+}
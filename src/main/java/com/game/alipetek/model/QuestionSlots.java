@@ -0,0 +1,31 @@
+package com.game.alipetek.model;
+
+/**
+ * Dense numbering of (letter A-Z, difficulty) pairs, shared by the question bank index and
+ * the per-game tables so both bucket questions the same way.
+ */
+public final class QuestionSlots {
+
+    public static final int LETTER_COUNT = 26;
+    public static final int DIFFICULTY_COUNT = QuestionDifficultyEnum.values().length;
+    public static final int COUNT = LETTER_COUNT * DIFFICULTY_COUNT;
+
+    private QuestionSlots() {
+    }
+
+    // -1 for anything outside A-Z or without a difficulty
+    public static int of(char letter, QuestionDifficultyEnum difficulty) {
+        char upper = Character.toUpperCase(letter);
+        if (upper < 'A' || upper > 'Z' || difficulty == null) {
+            return -1;
+        }
+        return (upper - 'A') * DIFFICULTY_COUNT + difficulty.ordinal();
+    }
+
+    public static int of(Question question) {
+        if (question == null || question.getLetter() == null) {
+            return -1;
+        }
+        return of(question.getLetter(), question.getQuestionDifficultyEnum());
+    }
+}
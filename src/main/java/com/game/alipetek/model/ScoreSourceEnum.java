@@ -0,0 +1,8 @@
+package com.game.alipetek.model;
+
+public enum ScoreSourceEnum {
+    // Points earned by answering, the only source the windowed leaderboards rank
+    ANSWER_POINTS,
+    // Flat award to the player left in a game the opponent forfeited
+    DISCONNECT_AWARD
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -15,6 +16,7 @@ import java.util.Set;
 @Data
 @Entity
 @Builder
+@DynamicUpdate
 @Table(name = "users")
 @AllArgsConstructor
 public class User implements UserDetails {
@@ -34,7 +36,8 @@ public class User implements UserDetails {
     @Column(name = "verification_expiration")
     private LocalDateTime verificationCodeExpiresAt;
     private boolean enabled;
-    @Column(name = "score")
+    // Only ever changed by ScoreUpdates' atomic increments, entity saves leave it alone
+    @Column(name = "score", updatable = false)
     private int score;
     @Column(name = "avatar_url")
     private String avatarUrl;
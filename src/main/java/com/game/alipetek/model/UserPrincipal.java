@@ -0,0 +1,41 @@
+package com.game.alipetek.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * What an authenticated request knows about its user. Loaded without the User entity and
+ * its friends graph; controllers that need more load the User explicitly.
+ */
+@Getter
+public final class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final boolean enabled;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(Long id, String username, boolean enabled) {
+        this.id = id;
+        this.username = username;
+        this.enabled = enabled;
+        this.authorities = List.of();
+    }
+
+    // Requests are authenticated by token, the password hash never leaves the User entity
+    @Override
+    @JsonIgnore
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+}
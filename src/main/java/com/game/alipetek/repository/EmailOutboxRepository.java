@@ -0,0 +1,26 @@
+package com.game.alipetek.repository;
+
+import com.game.alipetek.model.EmailOutbox;
+import com.game.alipetek.model.EmailStatusEnum;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // SKIP LOCKED lets several instances drain the outbox without sending a mail twice
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM EmailOutbox e WHERE e.status = :status AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<EmailOutbox> findDue(@Param("status") EmailStatusEnum status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(EmailStatusEnum status);
+}
@@ -0,0 +1,27 @@
+package com.game.alipetek.repository;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.model.LeaderboardDailyPoints;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Rows are incremented by ScoreUpdates in its batched flush, not through this repository
+public interface LeaderboardDailyPointsRepository extends JpaRepository<LeaderboardDailyPoints, LeaderboardDailyPoints.Key> {
+
+    // Points per player for the days in [from, to)
+    @Query("SELECT new com.game.alipetek.dto.LeaderboardEntry(u.id, u.username, u.avatarUrl, CAST(SUM(d.points) AS Integer)) " +
+            "FROM LeaderboardDailyPoints d JOIN User u ON u.id = d.userId " +
+            "WHERE d.day >= :from AND d.day < :to GROUP BY u.id, u.username, u.avatarUrl")
+    List<LeaderboardEntry> sumByPlayer(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LeaderboardDailyPoints d WHERE d.day < :before")
+    int deleteBefore(@Param("before") LocalDate before);
+}
@@ -0,0 +1,16 @@
+package com.game.alipetek.repository;
+
+import com.game.alipetek.model.LeaderboardPeriod;
+import com.game.alipetek.model.LeaderboardWindowEnum;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface LeaderboardPeriodRepository extends JpaRepository<LeaderboardPeriod, Long> {
+
+    List<LeaderboardPeriod> findByWindowOrderByPeriodStartDesc(LeaderboardWindowEnum window, Pageable pageable);
+
+    boolean existsByWindowAndPeriodStart(LeaderboardWindowEnum window, LocalDate periodStart);
+}
@@ -1,18 +1,32 @@
 package com.game.alipetek.repository;
 
+import com.game.alipetek.dto.LeaderboardEntry;
 import com.game.alipetek.model.User;
+import com.game.alipetek.model.UserPrincipal;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    // Just the columns authentication needs, without touching friends_set
+    @Query("SELECT new com.game.alipetek.model.UserPrincipal(u.id, u.username, u.enabled) FROM User u WHERE u.username = :username")
+    Optional<UserPrincipal> findPrincipalByUsername(@Param("username") String username);
     Optional<User> findByEmail(String email);
 
-    @Query("SELECT u FROM User u ORDER BY u.score DESC")
-    List<User> findAllUsersOrderByScore();
+    @Query("SELECT new com.game.alipetek.model.UserPrincipal(u.id, u.username, u.enabled) FROM User u WHERE u.email = :email")
+    Optional<UserPrincipal> findPrincipalByEmail(@Param("email") String email);
+
+    // Postgres regular expression match, e.g. ^ali([1-9][0-9]{0,8})?$ for the base name and its numbered variants
+    @Query(value = "SELECT username FROM users WHERE username ~ :pattern", nativeQuery = true)
+    List<String> findUsernamesMatching(@Param("pattern") String pattern);
+
+    @Query("SELECT new com.game.alipetek.dto.LeaderboardEntry(u.id, u.username, u.avatarUrl, u.score) FROM User u")
+    List<LeaderboardEntry> findLeaderboardEntries();
 
     Optional<User> findByVerificationCode(String verificationCode);
 }
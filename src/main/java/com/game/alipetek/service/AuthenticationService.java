@@ -6,48 +6,65 @@ import com.game.alipetek.dto.VerifyUserDto;
 import com.game.alipetek.exception.AuthenticationException;
 import com.game.alipetek.model.User;
 import com.game.alipetek.repository.UserRepository;
+import com.game.alipetek.model.UserPrincipal;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
-import jakarta.mail.MessagingException;
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.transaction.Transactional;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.UUID;
 
 @Service
 public class AuthenticationService {
 
-    @Value("${spring.security.oauth2.client.registration.google.client-id}")
-    private String googleClientId;
+    // Google accounts have no password; this prefix is never a valid BCrypt hash, so password login always fails
+    private static final String GOOGLE_PASSWORD_PREFIX = "google:";
+    // Concurrent signups can take the picked username before our insert lands
+    private static final int MAX_GOOGLE_SIGNUP_ATTEMPTS = 3;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
-
-    private final GsonFactory jsonFactory = GsonFactory.getDefaultInstance();
+    private final GoogleTokenVerifier googleTokenVerifier;
+    private final LeaderboardService leaderboardService;
+    private final Timer googleLoginTimer;
 
     public AuthenticationService(
             UserRepository userRepository,
             AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
-            EmailService emailService
+            EmailService emailService,
+            GoogleTokenVerifier googleTokenVerifier,
+            LeaderboardService leaderboardService,
+            MeterRegistry meterRegistry
     ) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
+        this.googleTokenVerifier = googleTokenVerifier;
+        this.leaderboardService = leaderboardService;
+        this.googleLoginTimer = Timer.builder("auth.google.login")
+                .description("Google login latency, from ID token to authenticated user")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
     }
 
+    @Transactional
     public User signup(RegisterUserDto input) {
         if (userRepository.findByUsername(input.getUsername()).isPresent()) {
             throw new AuthenticationException(String.format("User with username %s already exists!", input.getUsername()), "username");
@@ -66,16 +83,23 @@ public class AuthenticationService {
                 .score(0)
                 .build();
         user.setEnabled(false);
-        sendVerificationEmail(user);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        leaderboardService.update(saved);
+        sendVerificationEmail(saved);
+        return saved;
     }
 
-    public User authenticateWithGoogle(String idTokenString) throws GeneralSecurityException, IOException {
-        GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(new NetHttpTransport(), jsonFactory)
-                .setAudience(Collections.singletonList(googleClientId))
-                .build();
+    public UserDetails authenticateWithGoogle(String idTokenString) throws GeneralSecurityException, IOException {
+        Timer.Sample sample = Timer.start();
+        try {
+            return loginWithGoogle(idTokenString);
+        } finally {
+            sample.stop(googleLoginTimer);
+        }
+    }
 
-        GoogleIdToken idToken = verifier.verify(idTokenString);
+    private UserDetails loginWithGoogle(String idTokenString) throws GeneralSecurityException, IOException {
+        GoogleIdToken idToken = googleTokenVerifier.verify(idTokenString);
         if (idToken != null) {
             GoogleIdToken.Payload payload = idToken.getPayload();
 
@@ -83,20 +107,32 @@ public class AuthenticationService {
             String name = (String) payload.get("name");
             String pictureUrl = (String) payload.get("picture");
 
-            Optional<User> existingUser = userRepository.findByEmail(email);
-            if (existingUser.isPresent()) {
-                return existingUser.get();
+            for (int attempt = 1; ; attempt++) {
+                // Returning users only need what goes into the token, not the User and its friends
+                Optional<UserPrincipal> existingUser = userRepository.findPrincipalByEmail(email);
+                if (existingUser.isPresent()) {
+                    return existingUser.get();
+                }
+
+                User newUser = User.builder()
+                        .email(email)
+                        .username(generateUniqueUsername(name != null ? name : email.split("@")[0]))
+                        .password(GOOGLE_PASSWORD_PREFIX + UUID.randomUUID())
+                        .enabled(true)
+                        .avatarUrl(pictureUrl)
+                        .build();
+
+                try {
+                    User saved = userRepository.save(newUser);
+                    leaderboardService.update(saved);
+                    return saved;
+                } catch (DataIntegrityViolationException e) {
+                    // Lost a race for the username, or the same account signed up in parallel
+                    if (attempt >= MAX_GOOGLE_SIGNUP_ATTEMPTS) {
+                        throw e;
+                    }
+                }
             }
-
-            User newUser = User.builder()
-                    .email(email)
-                    .username(generateUniqueUsername(name))
-                    .password(passwordEncoder.encode(generateRandomPassword()))
-                    .enabled(true)
-                    .avatarUrl(pictureUrl)
-                    .build();
-
-            return userRepository.save(newUser);
         }
 
         throw new IllegalArgumentException("Invalid ID token");
@@ -139,6 +175,7 @@ public class AuthenticationService {
         }
     }
 
+    @Transactional
     public void resendVerificationCode(String email) {
         Optional<User> optionalUser = userRepository.findByEmail(email);
         if (optionalUser.isPresent()) {
@@ -148,8 +185,8 @@ public class AuthenticationService {
             }
             user.setVerificationCode(generateVerificationCode());
             user.setVerificationCodeExpiresAt(LocalDateTime.now().plusHours(1));
-            sendVerificationEmail(user);
             userRepository.save(user);
+            sendVerificationEmail(user);
         } else {
             throw new RuntimeException("User not found");
         }
@@ -171,35 +208,36 @@ public class AuthenticationService {
                 + "</body>"
                 + "</html>";
 
-        try {
-            emailService.sendVerificationEmail(user.getEmail(), subject, htmlMessage);
-        } catch (MessagingException e) {
-            e.printStackTrace();
-        }
+        // Queued in the outbox as part of the caller's transaction, delivered by EmailOutboxDispatcher
+        emailService.sendVerificationEmail(user.getEmail(), subject, htmlMessage);
     }
 
+    // Base name if free, otherwise the base with the lowest numeric suffix not taken yet
     private String generateUniqueUsername(String name) {
         String baseUsername = name.toLowerCase().replaceAll("\\s+", "");
-        String username = baseUsername;
-        int counter = 1;
-
-        while (userRepository.findByUsername(username).isPresent()) {
-            username = baseUsername + counter++;
+        if (baseUsername.isEmpty()) {
+            baseUsername = "player";
         }
-
-        return username;
-    }
-
-    private String generateRandomPassword() {
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%^&*";
-        StringBuilder password = new StringBuilder();
-        Random random = new Random();
-
-        for (int i = 0; i < 16; i++) {
-            password.append(chars.charAt(random.nextInt(chars.length())));
+        // The base and the base plus a numeric suffix, not every name that merely starts with it; anything but letters and digits is escaped
+        String pattern = "^" + baseUsername.replaceAll("([^\\p{L}\\p{N}])", "\\\\$1") + "([1-9][0-9]{0,8})?$";
+
+        List<String> usernames = userRepository.findUsernamesMatching(pattern);
+        boolean baseTaken = false;
+        // n taken names leave a free suffix in 1..n+1, so larger suffixes can be ignored
+        BitSet takenSuffixes = new BitSet(usernames.size() + 2);
+        for (String username : usernames) {
+            String suffix = username.substring(baseUsername.length());
+            if (suffix.isEmpty()) {
+                baseTaken = true;
+            } else {
+                int counter = Integer.parseInt(suffix);
+                if (counter <= usernames.size()) {
+                    takenSuffixes.set(counter);
+                }
+            }
         }
 
-        return password.toString();
+        return baseTaken ? baseUsername + takenSuffixes.nextClearBit(1) : baseUsername;
     }
 
     private String generateVerificationCode() {
@@ -0,0 +1,50 @@
+package com.game.alipetek.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small scheduler for periodic jobs that wait on the network, such as SMTP delivery and
+ * certificate fetches. Kept apart from Spring's @Scheduled pool so a slow remote server can
+ * never hold up the game ticks and flushes running there.
+ */
+@Component
+@Slf4j
+public class BlockingTaskScheduler {
+
+    private final ScheduledExecutorService executor;
+
+    public BlockingTaskScheduler(@Value("${app.blocking-tasks.pool-size:2}") int poolSize) {
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, poolSize), runnable -> {
+            Thread thread = new Thread(runnable, "blocking-tasks-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Like @Scheduled(fixedDelay), a failing run is logged and the next one still happens
+    public ScheduledFuture<?> scheduleWithFixedDelay(String name, Runnable task, long initialDelayMillis, long delayMillis) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Scheduled task {} failed: {}", name, e.getMessage(), e);
+            }
+        }, initialDelayMillis, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,127 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded pool of ready-made decks kept topped up by a background worker. Each deck
+ * remembers the question index it was drawn from, so decks built before the question
+ * bank changed are dropped instead of handed out.
+ */
+@Component
+@Slf4j
+public class DeckPool {
+
+    private final QuestionService questionService;
+    private final int capacity;
+    private final BlockingQueue<PooledDeck> decks;
+
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deck-pool-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean refillPending = new AtomicBoolean();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer refillTimer;
+
+    public DeckPool(QuestionService questionService, MeterRegistry meterRegistry,
+                    @Value("${game.deck-pool.size:64}") int capacity) {
+        this.questionService = questionService;
+        this.capacity = Math.max(1, capacity);
+        this.decks = new ArrayBlockingQueue<>(this.capacity);
+
+        Gauge.builder("deck.pool.size", decks, BlockingQueue::size)
+                .description("Ready-made decks waiting in the pool")
+                .register(meterRegistry);
+        Gauge.builder("deck.pool.hit.rate", this, DeckPool::hitRate)
+                .description("Share of game creations served from the pool")
+                .register(meterRegistry);
+        this.hits = Counter.builder("deck.pool.hits").register(meterRegistry);
+        this.misses = Counter.builder("deck.pool.misses").register(meterRegistry);
+        this.refillTimer = Timer.builder("deck.pool.refill")
+                .description("Time to top the pool back up to capacity")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        requestRefill();
+    }
+
+    public long[] take() {
+        QuestionIndex currentIndex = questionService.getQuestionIndex();
+
+        PooledDeck deck = decks.poll();
+        if (deck != null && deck.index != currentIndex) {
+            // The question bank changed, every pooled deck is stale
+            decks.clear();
+            deck = null;
+        }
+        requestRefill();
+
+        if (deck != null) {
+            hits.increment();
+            return deck.questionIds;
+        }
+
+        misses.increment();
+        return currentIndex.randomDeck();
+    }
+
+    private void requestRefill() {
+        if (decks.size() < capacity && refillPending.compareAndSet(false, true)) {
+            refiller.execute(this::refill);
+        }
+    }
+
+    private void refill() {
+        try {
+            refillTimer.record(() -> {
+                while (decks.remainingCapacity() > 0) {
+                    QuestionIndex index = questionService.getQuestionIndex();
+                    if (!decks.offer(new PooledDeck(index, index.randomDeck()))) {
+                        break;
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to refill deck pool: {}", e.getMessage(), e);
+        } finally {
+            refillPending.set(false);
+        }
+    }
+
+    private double hitRate() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private static final class PooledDeck {
+        private final QuestionIndex index;
+        private final long[] questionIds;
+
+        private PooledDeck(QuestionIndex index, long[] questionIds) {
+            this.index = index;
+            this.questionIds = questionIds;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.model.EmailOutbox;
+import com.game.alipetek.model.EmailStatusEnum;
+import com.game.alipetek.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email outbox in batches. A whole batch goes through one
+ * JavaMailSender.send(MimeMessage...) call, which reuses a single SMTP connection for
+ * every message in it. Failed messages are retried with exponential backoff until
+ * mail.outbox.max-attempts is reached, after which they are marked FAILED.
+ * A batch is claimed in one short transaction by pushing its next attempt past a lease,
+ * sent with no transaction or connection held, and its results are written in a second
+ * short transaction. A batch lost to a crash is picked up again once its lease runs out.
+ * Runs on the BlockingTaskScheduler, away from the game ticks.
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender emailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingTaskScheduler blockingTaskScheduler;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final Counter sent;
+    private final Counter failed;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-base-delay-ms:5000}")
+    private long retryBaseDelayMillis;
+
+    @Value("${mail.outbox.retry-max-delay-ms:3600000}")
+    private long retryMaxDelayMillis;
+
+    // How long a claimed batch stays invisible to other dispatchers while it is being sent
+    @Value("${mail.outbox.claim-lease-ms:300000}")
+    private long claimLeaseMillis;
+
+    @Value("${mail.outbox.poll-interval-ms:2000}")
+    private long pollIntervalMillis;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository, JavaMailSender emailSender,
+                                 PlatformTransactionManager transactionManager,
+                                 BlockingTaskScheduler blockingTaskScheduler, MeterRegistry meterRegistry) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailSender = emailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.blockingTaskScheduler = blockingTaskScheduler;
+
+        Gauge.builder("mail.outbox.pending", pending, AtomicLong::get)
+                .description("Emails waiting in the outbox, as of the last dispatch run")
+                .register(meterRegistry);
+        this.sent = Counter.builder("mail.outbox.sent").register(meterRegistry);
+        this.failed = Counter.builder("mail.outbox.failed")
+                .description("Emails given up on after the last retry")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        blockingTaskScheduler.scheduleWithFixedDelay("email-outbox", this::dispatch, pollIntervalMillis, pollIntervalMillis);
+    }
+
+    public void dispatch() {
+        List<EmailOutbox> batch = transactionTemplate.execute(status -> claim(LocalDateTime.now()));
+
+        if (batch != null && !batch.isEmpty()) {
+            send(batch, LocalDateTime.now());
+            transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.saveAll(batch));
+        }
+        pending.set(emailOutboxRepository.countByStatus(EmailStatusEnum.PENDING));
+    }
+
+    private List<EmailOutbox> claim(LocalDateTime now) {
+        List<EmailOutbox> batch = emailOutboxRepository.findDue(EmailStatusEnum.PENDING, now, PageRequest.of(0, batchSize));
+        LocalDateTime leaseEnd = now.plusNanos(claimLeaseMillis * 1_000_000);
+        batch.forEach(email -> email.setNextAttemptAt(leaseEnd));
+        return emailOutboxRepository.saveAll(batch);
+    }
+
+    private void send(List<EmailOutbox> batch, LocalDateTime now) {
+        Map<MimeMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (EmailOutbox email : batch) {
+            try {
+                MimeMessage message = toMimeMessage(email);
+                byMessage.put(message, email);
+                messages.add(message);
+            } catch (MessagingException e) {
+                markFailed(email, e, now);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        try {
+            emailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Per message failures; an empty map means the connection itself failed
+            failures = e.getFailedMessages().isEmpty() ? failAll(messages, e) : e.getFailedMessages();
+        } catch (MailException e) {
+            failures = failAll(messages, e);
+        }
+
+        for (MimeMessage message : messages) {
+            EmailOutbox email = byMessage.get(message);
+            Exception failure = failures.get(message);
+            if (failure == null) {
+                email.setStatus(EmailStatusEnum.SENT);
+                email.setSentDate(now);
+                email.setLastError(null);
+                sent.increment();
+            } else {
+                markFailed(email, failure, now);
+            }
+        }
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox email) throws MessagingException {
+        MimeMessage message = emailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), true);
+        return message;
+    }
+
+    private void markFailed(EmailOutbox email, Exception error, LocalDateTime now) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setLastError(truncate(error.getMessage()));
+
+        if (attempts >= maxAttempts) {
+            email.setStatus(EmailStatusEnum.FAILED);
+            failed.increment();
+            log.error("Giving up on email {} to {} after {} attempts: {}", email.getId(), email.getRecipient(), attempts, error.getMessage());
+            return;
+        }
+
+        long delay = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempts - 1, 20));
+        email.setNextAttemptAt(now.plusNanos(delay * 1_000_000));
+        log.warn("Email {} to {} failed (attempt {}), retrying in {} ms: {}", email.getId(), email.getRecipient(), attempts, delay, error.getMessage());
+    }
+
+    private static Map<Object, Exception> failAll(List<MimeMessage> messages, Exception error) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        messages.forEach(message -> failures.put(message, error));
+        return failures;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -1,25 +1,32 @@
 package com.game.alipetek.service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import com.game.alipetek.model.EmailOutbox;
+import com.game.alipetek.model.EmailStatusEnum;
+import com.game.alipetek.repository.EmailOutboxRepository;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+
 @Service
 public class EmailService {
-    @Autowired
-    private JavaMailSender emailSender;
 
-    public void sendVerificationEmail(String to, String subject, String text) throws MessagingException {
-        MimeMessage message = emailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+    private final EmailOutboxRepository emailOutboxRepository;
 
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(text, true);
+    public EmailService(EmailOutboxRepository emailOutboxRepository) {
+        this.emailOutboxRepository = emailOutboxRepository;
+    }
 
-        emailSender.send(message);
+    // Joins the caller's transaction, the mail only goes out if that transaction commits
+    public void sendVerificationEmail(String to, String subject, String text) {
+        LocalDateTime now = LocalDateTime.now();
+        emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(to)
+                .subject(subject)
+                .body(text)
+                .status(EmailStatusEnum.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdDate(now)
+                .build());
     }
 }
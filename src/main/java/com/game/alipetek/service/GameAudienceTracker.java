@@ -0,0 +1,180 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.GameAudience;
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts subscribers of each /topic/game-state/{gameId} topic, telling players apart from spectators.
+ */
+@Component
+@Slf4j
+public class GameAudienceTracker {
+
+    private final GameSessionRegistry gameSessionRegistry;
+
+    // sessionId -> subscriptionId -> subscription
+    private final ConcurrentHashMap<String, Map<String, Subscription>> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Audience> audiences = new ConcurrentHashMap<>();
+
+    private final AtomicInteger totalSubscribers = new AtomicInteger();
+    private final AtomicInteger totalSpectators = new AtomicInteger();
+
+    public GameAudienceTracker(GameSessionRegistry gameSessionRegistry, MeterRegistry meterRegistry) {
+        this.gameSessionRegistry = gameSessionRegistry;
+        Gauge.builder("game.topic.subscribers", totalSubscribers, AtomicInteger::get)
+                .description("Subscribers across all game state topics")
+                .register(meterRegistry);
+        Gauge.builder("game.topic.spectators", totalSpectators, AtomicInteger::get)
+                .description("Spectators across all game state topics")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Long gameId = gameIdOf(accessor.getDestination());
+        if (gameId == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+
+        boolean spectator = !isPlayer(gameId, event.getUser());
+        Subscription subscription = new Subscription(gameId, spectator);
+        Subscription previous = subscriptionsBySession
+                .computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), subscription);
+        if (previous != null) {
+            remove(previous);
+        }
+
+        audiences.compute(gameId, (id, audience) -> {
+            Audience current = audience != null ? audience : new Audience();
+            current.add(spectator);
+            return current;
+        });
+        totalSubscribers.incrementAndGet();
+        if (spectator) {
+            totalSpectators.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, Subscription> subscriptions = subscriptionsBySession.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            Subscription subscription = subscriptions.remove(accessor.getSubscriptionId());
+            if (subscription != null) {
+                remove(subscription);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, Subscription> subscriptions = subscriptionsBySession.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::remove);
+        }
+    }
+
+    public GameAudience getAudience(Long gameId) {
+        Audience audience = audiences.get(gameId);
+        if (audience == null) {
+            return new GameAudience(gameId, 0, 0);
+        }
+        return new GameAudience(gameId, audience.subscribers.get(), audience.spectators.get());
+    }
+
+    public List<GameAudience> getMostWatched(int limit) {
+        return audiences.entrySet().stream()
+                .map(entry -> new GameAudience(entry.getKey(), entry.getValue().subscribers.get(), entry.getValue().spectators.get()))
+                .sorted(Comparator.comparingInt(GameAudience::getSpectators).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private void remove(Subscription subscription) {
+        audiences.computeIfPresent(subscription.gameId, (id, audience) -> {
+            audience.remove(subscription.spectator);
+            return audience.isEmpty() ? null : audience;
+        });
+        totalSubscribers.decrementAndGet();
+        if (subscription.spectator) {
+            totalSpectators.decrementAndGet();
+        }
+    }
+
+    private boolean isPlayer(Long gameId, Principal principal) {
+        if (principal == null) {
+            return false;
+        }
+        Game game = gameSessionRegistry.find(gameId).orElse(null);
+        if (game == null) {
+            return false;
+        }
+        return game.getPlayers().stream()
+                .map(User::getUsername)
+                .anyMatch(principal.getName()::equals);
+    }
+
+    private static Long gameIdOf(String destination) {
+        if (destination == null || !destination.startsWith(GameStatePublisher.GAME_STATE_TOPIC)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(destination.substring(GameStatePublisher.GAME_STATE_TOPIC.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Subscription {
+        private final Long gameId;
+        private final boolean spectator;
+
+        private Subscription(Long gameId, boolean spectator) {
+            this.gameId = gameId;
+            this.spectator = spectator;
+        }
+    }
+
+    private static final class Audience {
+        private final AtomicInteger subscribers = new AtomicInteger();
+        private final AtomicInteger spectators = new AtomicInteger();
+
+        private void add(boolean spectator) {
+            subscribers.incrementAndGet();
+            if (spectator) {
+                spectators.incrementAndGet();
+            }
+        }
+
+        private void remove(boolean spectator) {
+            subscribers.decrementAndGet();
+            if (spectator) {
+                spectators.decrementAndGet();
+            }
+        }
+
+        private boolean isEmpty() {
+            return subscribers.get() <= 0;
+        }
+    }
+}
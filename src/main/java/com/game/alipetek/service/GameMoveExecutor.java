@@ -0,0 +1,137 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Runs moves for the same game one at a time. Every game with pending moves has its own
+ * mailbox, drained in order by a virtual thread that exits once the mailbox is empty. Moves
+ * block on the database (loading a game, the final save of a finished one, a question that
+ * missed the index), so a slow query or a wait for a pooled connection only holds up the
+ * game that issued it, while other games keep moving.
+ */
+@Component
+@Slf4j
+public class GameMoveExecutor {
+
+    private static final ThreadLocal<Long> CURRENT_GAME = new ThreadLocal<>();
+
+    // Every mailbox field is only read and written inside a compute on its key
+    private final ConcurrentHashMap<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService threads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("game-moves-", 0).factory());
+
+    public GameMoveExecutor(MeterRegistry meterRegistry) {
+        Gauge.builder("game.moves.mailboxes", mailboxes, Map::size)
+                .description("Games with moves queued or running")
+                .register(meterRegistry);
+    }
+
+    // Checked exceptions thrown by the move are rethrown unchanged to the caller
+    @SneakyThrows
+    public <T> T execute(Long gameId, Callable<T> move) {
+        Long key = keyOf(gameId);
+        if (key.equals(CURRENT_GAME.get())) {
+            return move.call();
+        }
+
+        FutureTask<T> result = new FutureTask<>(move);
+        enqueue(key, result);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void submit(Long gameId, Runnable move) {
+        try {
+            enqueue(keyOf(gameId), () -> {
+                try {
+                    move.run();
+                } catch (Exception e) {
+                    log.error("Error running move for game {}: {}", gameId, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Dropped move for game {}, the executor is shutting down", gameId);
+        }
+    }
+
+    private void enqueue(Long key, Runnable move) {
+        mailboxes.compute(key, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox(id);
+            }
+            if (!mailbox.running) {
+                // Throws RejectedExecutionException after shutdown, leaving the map as it was
+                threads.execute(mailbox);
+                mailbox.running = true;
+            }
+            mailbox.moves.add(move);
+            return mailbox;
+        });
+    }
+
+    private static Long keyOf(Long gameId) {
+        return gameId != null ? gameId : 0L;
+    }
+
+    // Lets queued moves finish and refuses new ones; safe to call more than once
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        threads.shutdown();
+        threads.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private final class Mailbox implements Runnable {
+        private final Long gameId;
+        private final Queue<Runnable> moves = new ArrayDeque<>();
+        private boolean running;
+
+        private Mailbox(Long gameId) {
+            this.gameId = gameId;
+        }
+
+        @Override
+        public void run() {
+            CURRENT_GAME.set(gameId);
+            try {
+                Runnable move;
+                while ((move = next()) != null) {
+                    try {
+                        move.run();
+                    } catch (Throwable e) {
+                        // Keeps draining, the game's later moves must not be stranded in the mailbox
+                        log.error("Move for game {} failed: {}", gameId, e.getMessage(), e);
+                    }
+                }
+            } finally {
+                CURRENT_GAME.remove();
+            }
+        }
+
+        // Drops the mailbox once it is empty, a later move starts a new one
+        private Runnable next() {
+            Runnable[] next = new Runnable[1];
+            mailboxes.compute(gameId, (id, mailbox) -> {
+                next[0] = moves.poll();
+                if (next[0] == null) {
+                    running = false;
+                    return null;
+                }
+                return mailbox;
+            });
+            return next[0];
+        }
+    }
+}
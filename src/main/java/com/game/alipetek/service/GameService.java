@@ -1,77 +1,98 @@
 package com.game.alipetek.service;
 
 import com.game.alipetek.dto.GamePlay;
+import com.game.alipetek.dto.GameSessionLoaded;
 import com.game.alipetek.dto.JoinFriendsGameRequest;
 import com.game.alipetek.dto.LoadQuestionRequest;
 import com.game.alipetek.dto.LoadQuestionWithDiceDto;
 import com.game.alipetek.exception.InvalidGameException;
 import com.game.alipetek.exception.NotFoundException;
+import com.game.alipetek.exception.StaleMoveException;
 import com.game.alipetek.exception.WrongAnswerException;
 import com.game.alipetek.model.*;
 import com.game.alipetek.repository.GameRepository;
-import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 @Service
-@Transactional
+@Slf4j
 public class GameService {
 
+    // Awarded to the player left in a game when the opponent forfeits by disconnecting
+    private static final int DISCONNECT_POINTS = 1000;
+
     private final GameRepository gameRepository;
+    private final GameSessionRegistry gameSessionRegistry;
+    private final GameMoveExecutor gameMoveExecutor;
+    private final MatchmakingQueue matchmakingQueue;
+    private final DeckPool deckPool;
+    private final GameStatePublisher gameStatePublisher;
+    private final SocketSessionRegistry socketSessionRegistry;
+    private final QuestionDeadlines questionDeadlines;
+    private final WrongGuessCounters wrongGuessCounters;
     private final QuestionService questionService;
     private final UserService userService;
+    private final ScoreUpdates scoreUpdates;
 
-    public GameService(GameRepository gameRepository, QuestionService questionService, UserService userService) {
+    public GameService(GameRepository gameRepository, GameSessionRegistry gameSessionRegistry, GameMoveExecutor gameMoveExecutor,
+                       MatchmakingQueue matchmakingQueue, DeckPool deckPool, GameStatePublisher gameStatePublisher,
+                       SocketSessionRegistry socketSessionRegistry, QuestionDeadlines questionDeadlines,
+                       WrongGuessCounters wrongGuessCounters, QuestionService questionService, UserService userService,
+                       ScoreUpdates scoreUpdates) {
         this.gameRepository = gameRepository;
+        this.gameSessionRegistry = gameSessionRegistry;
+        this.gameMoveExecutor = gameMoveExecutor;
+        this.matchmakingQueue = matchmakingQueue;
+        this.deckPool = deckPool;
+        this.gameStatePublisher = gameStatePublisher;
+        this.socketSessionRegistry = socketSessionRegistry;
+        this.questionDeadlines = questionDeadlines;
+        this.wrongGuessCounters = wrongGuessCounters;
         this.questionService = questionService;
         this.userService = userService;
+        this.scoreUpdates = scoreUpdates;
     }
 
-    @Transactional
     public Game getGameWithWrongGuesses(Long gameId) throws NotFoundException {
-        return gameRepository.findById(gameId)
-                .orElseThrow(() -> new NotFoundException("Game not found with id: " + gameId));
+        return gameSessionRegistry.getGame(gameId);
     }
 
-    @Transactional
     public Game updateGame(Game game) {
-        return gameRepository.save(game);
+        return gameSessionRegistry.persist(game);
+    }
+
+    // Only bumps an in-memory counter, the broadcast and the write to the game are coalesced per tick
+    public void handleWrongGuess(Long gameId, String player) throws NotFoundException {
+        wrongGuessCounters.increment(getGameWithWrongGuesses(gameId), player);
     }
 
-    @Transactional
-    public Game handleWrongGuess(Long gameId, String player) throws NotFoundException {
-        Game game = getGameWithWrongGuesses(gameId);
-        game.incrementWrongGuesses(player);
-        return gameRepository.save(game);
+    public LoadQuestionWithDiceDto loadQuestionWithDice(LoadQuestionRequest loadQuestionRequest) throws NotFoundException {
+        return gameMoveExecutor.execute(loadQuestionRequest.getGameId(), () -> applyDiceRoll(loadQuestionRequest));
     }
 
-    public LoadQuestionWithDiceDto loadQuestionWithDice(LoadQuestionRequest loadQuestionRequest) {
+    private LoadQuestionWithDiceDto applyDiceRoll(LoadQuestionRequest loadQuestionRequest) throws NotFoundException {
 
         Random random = new Random();
         int diceRoll = random.nextInt(6) + 1;
 
-        Optional<Game> optionalGame = gameRepository.findById(loadQuestionRequest.getGameId());
-        Game game = optionalGame.get();
+        Game game = gameSessionRegistry.getGame(loadQuestionRequest.getGameId());
 
         QuestionDifficultyEnum difficulty = QuestionDifficultyEnum.values()[diceRoll - 1];
-        List<Question> matchingQuestions = game.getQuestionList().stream()
-                .filter(q -> q.getLetter().toString().equalsIgnoreCase(loadQuestionRequest.getLetter()) &&
-                        q.getQuestionDifficultyEnum() == difficulty)
-                .collect(Collectors.toList());
+        String letter = loadQuestionRequest.getLetter();
 
         Question selectedQuestion = null;
-        if (!matchingQuestions.isEmpty()) {
-            selectedQuestion = matchingQuestions.get(random.nextInt(matchingQuestions.size()));
+        if (letter != null && letter.length() == 1) {
+            selectedQuestion = questionTable(game).pick(letter.charAt(0), difficulty);
         }
 
         game.setCurrentQuestion(selectedQuestion);
         game.setCurrentDice(diceRoll);
-        gameRepository.save(game);
+        commitMove(game);
 
         LoadQuestionWithDiceDto loadQuestionWithDiceDto = LoadQuestionWithDiceDto.builder()
                 .dice(diceRoll)
@@ -93,68 +114,111 @@ public class GameService {
                 .currentLetter("A")
                 .currentDice(diceRoll)
                 .currentQuestion(questionService.getFirstQuestion(diceRoll))
-                .questionList(questionService.loadQuestions())
+                .questionDeck(deckPool.take())
                 .firstSessionId(sessionId)
                 .firstUserPoints(0)
                 .createdDate(LocalDateTime.now())
                 .build();
 
-        gameRepository.save(game);
-        return game;
+        Game created = gameSessionRegistry.persist(game);
+        socketSessionRegistry.bindGame(sessionId, username, created.getId());
+        gameMoveExecutor.execute(created.getId(), () -> commitMove(created));
+        matchmakingQueue.enqueue(created.getId(), username);
+        return created;
     }
 
-    public Game connectToRandomGame(String username) throws NotFoundException, InvalidGameException {
+    public Game connectToRandomGame(String username, String sessionId) throws NotFoundException, InvalidGameException {
         User user = userService.getUserByUsername(username);
 
-        Optional<Game> optionalGame = Optional.ofNullable(gameRepository.findFirstByGameStatusEnumAndSecondUserIsNull(GameStatusEnum.NEW)
-                .orElseThrow(() -> new NotFoundException("Game not found")));
-
-        Game game = optionalGame.get();
-        if (game.getSecondUser() != null) {
-            throw new InvalidGameException("Game is not valid anymore");
+        while (true) {
+            Long gameId = matchmakingQueue.claimNext(username)
+                    .orElseThrow(() -> new NotFoundException("Game not found"));
+            try {
+                return joinQueuedGame(gameId, user, sessionId);
+            } catch (InvalidGameException | NotFoundException e) {
+                // The claimed game went away before we could join it, try the next one
+                log.info("Skipping stale matchmaking entry for game {}", gameId);
+            }
         }
+    }
 
-        game.setSecondUser(user);
-        game.setSecondUserPoints(0);
-        game.setGameStatusEnum(GameStatusEnum.IN_PROGRESS);
-
-        gameRepository.save(game);
-        return game;
+    private Game joinQueuedGame(Long gameId, User user, String sessionId) throws InvalidGameException, NotFoundException {
+        return gameMoveExecutor.execute(gameId, () -> joinGame(gameSessionRegistry.getGame(gameId), user, sessionId));
     }
 
     public Game connectToFriendsGame(JoinFriendsGameRequest request) throws InvalidGameException, NotFoundException {
         User user = userService.getUserByUsername(request.getUsername());
 
-        Optional<Game> optionalGame = gameRepository.findById(Long.valueOf(request.getGameId()));
-        if (!optionalGame.isPresent()) {
-            throw new NotFoundException("Game not found");
-        }
-        Game game = optionalGame.get();
+        Long gameId = Long.valueOf(request.getGameId());
+        return gameMoveExecutor.execute(gameId, () -> {
+            // A game missing from the queue, e.g. created before a restart, is only guarded by joinGame's free seat check
+            if (matchmakingQueue.isQueued(gameId) && !matchmakingQueue.claim(gameId)) {
+                throw new InvalidGameException("Game is not valid anymore");
+            }
+            return joinGame(gameSessionRegistry.getGame(gameId), user, request.getSessionId());
+        });
+    }
+
+    private Game joinGame(Game game, User user, String sessionId) throws InvalidGameException {
         if (game.getSecondUser() != null) {
             throw new InvalidGameException("Game is not valid anymore");
         }
 
         game.setSecondUser(user);
         game.setSecondUserPoints(0);
+        game.setSecondSessionId(sessionId);
         game.setGameStatusEnum(GameStatusEnum.IN_PROGRESS);
+        game.setStartTimestamp(System.currentTimeMillis() + 5000);
+        // The first letter only starts counting once the game's countdown is over
+        game.setQuestionStartedAt(game.getStartTimestamp());
+        game.advanceStateVersion();
+        socketSessionRegistry.bindGame(sessionId, user.getUsername(), game.getId());
+        questionDeadlines.track(game, this::expireQuestion);
 
         gameRepository.save(game);
+        gameStatePublisher.publish(game);
         return game;
     }
 
-    public Game gamePlay(GamePlay gamePlay) throws InvalidGameException, NotFoundException, WrongAnswerException {
-        Optional<Game> optionalGame = gameRepository.findById(gamePlay.getGameId());
-        if (!optionalGame.isPresent()) {
-            throw new NotFoundException("Game not found");
-        }
-        Game game = optionalGame.get();
+    public Game gamePlay(GamePlay gamePlay) throws InvalidGameException, NotFoundException, WrongAnswerException, StaleMoveException {
+        return gameMoveExecutor.execute(gamePlay.getGameId(), () -> applyAnswer(gamePlay));
+    }
+
+    private Game applyAnswer(GamePlay gamePlay) throws InvalidGameException, NotFoundException, WrongAnswerException, StaleMoveException {
+        Game game = gameSessionRegistry.getGame(gamePlay.getGameId());
         Question currentQuestion = game.getCurrentQuestion();
 
+        if (!isPlayer(game, gamePlay.getUsername())) {
+            throw new InvalidGameException("Spectators cannot submit answers");
+        }
+
+        // A retry replays the original outcome instead of applying the move twice, even once the move finished the game
+        String moveKey = gamePlay.getMoveId() != null ? gamePlay.getUsername() + ":" + gamePlay.getMoveId() : null;
+        Boolean previousOutcome = moveKey != null ? gameSessionRegistry.findMoveOutcome(game.getId(), moveKey) : null;
+        if (previousOutcome != null) {
+            if (!previousOutcome) {
+                throw new WrongAnswerException("Your answer is wrong", "wrongAnswer");
+            }
+            return game;
+        }
+
         if (game.getGameStatusEnum().equals(GameStatusEnum.FINISHED)) {
             throw new InvalidGameException("Game is already finished");
         }
 
+        if (currentQuestion == null) {
+            throw new InvalidGameException("Game has no question to answer");
+        }
+
+        if (gamePlay.getExpectedVersion() != null && gamePlay.getExpectedVersion() != game.getStateVersion()) {
+            throw new StaleMoveException(game.getStateVersion());
+        }
+
+        GameSession session = gameSessionRegistry.findSession(game.getId()).orElse(null);
         boolean isCorrect = currentQuestion.getAnswer().equalsIgnoreCase(gamePlay.getUserAnswer());
+        if (session != null && moveKey != null) {
+            session.recordMove(moveKey, isCorrect);
+        }
 
         if (isCorrect) {
 
@@ -164,60 +228,138 @@ public class GameService {
                 game.setSecondUserPoints(game.getSecondUserPoints() + currentQuestion.getPoints());
             }
 
-            char nextLetter = (char) (currentQuestion.getLetter() + 1);
+            advanceLetter(game, (char) (currentQuestion.getLetter() + 1));
+        }
+        else {
+            throw new WrongAnswerException("Your answer is wrong", "wrongAnswer");
+        }
 
-            if (nextLetter <= 'Z') {
-                game.setCurrentLetter(String.valueOf(nextLetter));
-                game.resetWrongGuesses();
+        return commitMove(game);
+    }
 
-                Random random = new Random();
-                int diceRoll = random.nextInt(6) + 1;
-                game.setCurrentDice(diceRoll);
+    // A game reloaded after a restart or an idle eviction picks its letter timer back up
+    @EventListener
+    public void onGameSessionLoaded(GameSessionLoaded loaded) {
+        Long gameId = loaded.getGameId();
+        gameMoveExecutor.submit(gameId, () -> gameSessionRegistry.find(gameId)
+                .ifPresent(game -> questionDeadlines.track(game, this::expireQuestion)));
+    }
 
-                QuestionDifficultyEnum difficulty = QuestionDifficultyEnum.values()[diceRoll - 1];
-                List<Question> matchingQuestions = game.getQuestionList().stream()
-                        .filter(q -> q.getLetter().toString().equalsIgnoreCase(String.valueOf(nextLetter)) &&
-                                q.getQuestionDifficultyEnum() == difficulty)
-                        .collect(Collectors.toList());
+    // Runs in the game's move mailbox when nobody answered the letter in time
+    private void expireQuestion(Long gameId, String letter) {
+        Game game = gameSessionRegistry.find(gameId).orElse(null);
+        if (game == null || game.getGameStatusEnum() != GameStatusEnum.IN_PROGRESS || !letter.equals(game.getCurrentLetter())) {
+            return;
+        }
 
-                Question selectedQuestion = null;
-                if (!matchingQuestions.isEmpty()) {
-                    selectedQuestion = matchingQuestions.get(random.nextInt(matchingQuestions.size()));
-                }
-                game.setCurrentQuestion(selectedQuestion);
-                game.setGameStatusEnum(GameStatusEnum.IN_PROGRESS);
+        log.info("Letter {} timed out in game {}", letter, gameId);
+        advanceLetter(game, (char) (letter.charAt(0) + 1));
+        commitMove(game);
+    }
+
+    // Moves on to the next letter, or finishes the game after Z
+    private void advanceLetter(Game game, char nextLetter) {
+        if (nextLetter <= 'Z') {
+            game.setCurrentLetter(String.valueOf(nextLetter));
+            game.setQuestionStartedAt(System.currentTimeMillis());
+            game.resetWrongGuesses();
+            wrongGuessCounters.reset(game.getId());
+
+            Random random = new Random();
+            int diceRoll = random.nextInt(6) + 1;
+            game.setCurrentDice(diceRoll);
+
+            QuestionDifficultyEnum difficulty = QuestionDifficultyEnum.values()[diceRoll - 1];
+            game.setCurrentQuestion(questionTable(game).pick(nextLetter, difficulty));
+            game.setGameStatusEnum(GameStatusEnum.IN_PROGRESS);
+        } else {
+            game.setFinishedDate(LocalDateTime.now());
+            game.setGameStatusEnum(GameStatusEnum.FINISHED);
+            scoreUpdates.add(game.getFirstUser(), game.getFirstUserPoints(), ScoreSourceEnum.ANSWER_POINTS);
+            scoreUpdates.add(game.getSecondUser(), game.getSecondUserPoints(), ScoreSourceEnum.ANSWER_POINTS);
+
+            if (game.getFirstUserPoints() >= game.getSecondUserPoints()) {
+                game.setWinner(game.getFirstUser());
             } else {
-                game.setFinishedDate(LocalDateTime.now());
-                game.setGameStatusEnum(GameStatusEnum.FINISHED);
-                game.getFirstUser().setScore(game.getFirstUser().getScore() + game.getFirstUserPoints());
-                game.getSecondUser().setScore(game.getSecondUser().getScore() + game.getSecondUserPoints());
-
-                if (game.getFirstUserPoints() >= game.getSecondUserPoints()) {
-                    game.setWinner(game.getFirstUser());
-                } else {
-                    game.setWinner(game.getSecondUser());
-                }
+                game.setWinner(game.getSecondUser());
             }
         }
-        else {
-            throw new WrongAnswerException("Your answer is wrong", "wrongAnswer");
+    }
+
+    private boolean isPlayer(Game game, String username) {
+        return game.getPlayers().stream().anyMatch(player -> player.getUsername().equals(username));
+    }
+
+    // Every state change bumps the version and is published as exactly one event
+    private Game commitMove(Game game) {
+        game.advanceStateVersion();
+        questionDeadlines.track(game, this::expireQuestion);
+        if (game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
+            wrongGuessCounters.remove(game.getId());
         }
+        Game persisted = gameSessionRegistry.persist(game);
+        gameStatePublisher.publish(game);
+        return persisted;
+    }
 
-        gameRepository.save(game);
+    public byte[] getGameState(Long gameId) throws NotFoundException {
+        return gameMoveExecutor.execute(gameId, () -> gameStatePublisher.snapshotPayload(gameSessionRegistry.getGame(gameId)));
+    }
 
-        return game;
+    public void sendLegacyUpdate(String destination, Object payload) {
+        gameStatePublisher.sendLegacy(destination, payload);
+    }
+
+    // The deck is stored as question ids, resolved against the shared question bank on first use
+    private GameQuestionTable questionTable(Game game) {
+        GameQuestionTable table = game.getQuestionTable();
+        if (table == null) {
+            table = GameQuestionTable.of(questionService.getQuestions(game.getQuestionDeck()));
+            game.setQuestionTable(table);
+        }
+        return table;
     }
 
     public Game getGameByPlayer(String username) {
-        return gameRepository.findInProgressGameByUser(username, GameStatusEnum.IN_PROGRESS).get();
+        return gameSessionRegistry.resolve(gameRepository.findInProgressGameByUser(username, GameStatusEnum.IN_PROGRESS).get());
+    }
+
+    public Game forfeitGame(Long gameId, String disconnectedUsername) {
+        return gameMoveExecutor.execute(gameId, () -> {
+            Game game = gameSessionRegistry.getGame(gameId);
+            if (game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
+                return null;
+            }
+            matchmakingQueue.cancel(gameId);
+
+            User remainingUser = game.getFirstUser().getUsername().equals(disconnectedUsername)
+                    ? game.getSecondUser()
+                    : game.getFirstUser();
+
+            // A NEW game abandoned by its creator has nobody to award
+            if (remainingUser != null) {
+                scoreUpdates.add(remainingUser, DISCONNECT_POINTS, ScoreSourceEnum.DISCONNECT_AWARD);
+            }
+
+            game.setFinishedDate(LocalDateTime.now());
+            game.setGameStatusEnum(GameStatusEnum.FINISHED);
+            game.setWinner(remainingUser);
+            return commitMove(game);
+        });
+    }
+
+    // Memory only: a player back within the grace period gets the live state, never a reload
+    public void resendSnapshot(Long gameId, String username, String sessionId) {
+        gameMoveExecutor.submit(gameId, () -> gameSessionRegistry.find(gameId)
+                .ifPresent(game -> gameStatePublisher.sendSnapshot(game, username, sessionId)));
     }
 
-    public Game getGameBySessionId(String sessionId) {
-        return gameRepository.findGameBySessionId(sessionId).orElse(null);
+    public Game findLiveGame(Long gameId) {
+        return gameSessionRegistry.find(gameId).orElse(null);
     }
 
-    public Game getGameById(Long id) {
-        return gameRepository.findById(id).get();
+    public Game getGameById(Long id) throws NotFoundException {
+        return gameSessionRegistry.getGame(id);
     }
 
     public List<Game> getPreviousGamesByUsername(String username) {
@@ -227,6 +369,6 @@ public class GameService {
     }
 
     public void saveGame(Game game) {
-        gameRepository.save(game);
+        gameSessionRegistry.persist(game);
     }
 }
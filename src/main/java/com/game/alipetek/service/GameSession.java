@@ -0,0 +1,53 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.model.Game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GameSession {
+
+    private static final int RECENT_MOVES = 32;
+
+    private final Long gameId;
+    private final Game game;
+    private volatile long lastAccessMillis;
+
+    // Outcome of the last few moves by move id, only touched from the game's move mailbox
+    private final Map<String, Boolean> recentMoves = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_MOVES;
+        }
+    };
+
+    public GameSession(Game game) {
+        this.gameId = game.getId();
+        this.game = game;
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+
+    public Long getGameId() {
+        return gameId;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    Boolean findMoveOutcome(String moveKey) {
+        return recentMoves.get(moveKey);
+    }
+
+    void recordMove(String moveKey, boolean accepted) {
+        recentMoves.put(moveKey, accepted);
+    }
+}
@@ -0,0 +1,238 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.GameSessionLoaded;
+import com.game.alipetek.exception.NotFoundException;
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.GameStatusEnum;
+import com.game.alipetek.repository.GameRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authoritative in-memory state for live (NEW / IN_PROGRESS) games. Moves mutate the
+ * registered Game instance and only mark it dirty; dirty games are written back to
+ * the database in coalesced batches, while FINISHED games are flushed synchronously.
+ * Every write of a live game runs in its move mailbox, so a background flush can never
+ * save a half-applied move or land after the game's final save. A finished game's session
+ * is retired rather than dropped: its final state and recent move outcomes stay readable,
+ * so a retried final answer replays, and its published state is only forgotten once the
+ * retirement or an idle eviction ends.
+ */
+@Component
+@Slf4j
+public class GameSessionRegistry {
+
+    private final GameRepository gameRepository;
+    private final GameMoveExecutor gameMoveExecutor;
+    private final GameStatePublisher gameStatePublisher;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, GameSession> retiredSessions = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyGames = ConcurrentHashMap.newKeySet();
+
+    @Value("${game.session.idle-timeout-ms:1800000}")
+    private long idleTimeoutMillis;
+
+    @Value("${game.session.finished-retention-ms:60000}")
+    private long finishedRetentionMillis;
+
+    public GameSessionRegistry(GameRepository gameRepository, GameMoveExecutor gameMoveExecutor,
+                               GameStatePublisher gameStatePublisher, ApplicationEventPublisher eventPublisher) {
+        this.gameRepository = gameRepository;
+        this.gameMoveExecutor = gameMoveExecutor;
+        this.gameStatePublisher = gameStatePublisher;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Runs before any game can be loaded, so a deckless game is never played
+    @PostConstruct
+    public void finishGamesWithoutDeck() {
+        int finished = gameRepository.finishGamesWithoutDeck(GameStatusEnum.FINISHED, LocalDateTime.now());
+        if (finished > 0) {
+            log.warn("Finished {} games that were created without a question deck", finished);
+        }
+    }
+
+    public Game register(Game game) {
+        if (game.getId() == null || !isLive(game)) {
+            return game;
+        }
+        return sessions.computeIfAbsent(game.getId(), id -> new GameSession(game)).getGame();
+    }
+
+    public Optional<GameSession> findSession(Long gameId) {
+        GameSession session = gameId != null ? sessions.get(gameId) : null;
+        if (session != null) {
+            session.touch();
+        }
+        return Optional.ofNullable(session);
+    }
+
+    public Optional<Game> find(Long gameId) {
+        return findSession(gameId).map(GameSession::getGame);
+    }
+
+    public Game getGame(Long gameId) throws NotFoundException {
+        Optional<Game> live = find(gameId);
+        if (live.isPresent()) {
+            return live.get();
+        }
+
+        GameSession retired = retiredSessions.get(gameId);
+        if (retired != null) {
+            return retired.getGame();
+        }
+
+        Game game = gameRepository.findById(gameId)
+                .orElseThrow(() -> new NotFoundException("Game not found with id: " + gameId));
+        return load(game);
+    }
+
+    // Outcome of a recent move, also for a game that finished within the retention period
+    public Boolean findMoveOutcome(Long gameId, String moveKey) {
+        GameSession session = sessions.get(gameId);
+        if (session == null) {
+            session = retiredSessions.get(gameId);
+        }
+        return session != null ? session.findMoveOutcome(moveKey) : null;
+    }
+
+    // Maps a game loaded from the database onto the live instance, if there is one
+    public Game resolve(Game loaded) {
+        if (loaded == null) {
+            return null;
+        }
+        return find(loaded.getId()).orElseGet(() -> load(loaded));
+    }
+
+    // Registers a game read from the database, its timers are re-armed if this started its session
+    private Game load(Game loaded) {
+        Game live = register(loaded);
+        if (live == loaded && loaded.getGameStatusEnum() == GameStatusEnum.IN_PROGRESS) {
+            eventPublisher.publishEvent(new GameSessionLoaded(loaded.getId()));
+        }
+        return live;
+    }
+
+    public void markDirty(Game game) {
+        if (game.getId() != null) {
+            dirtyGames.add(game.getId());
+        }
+    }
+
+    public Game persist(Game game) {
+        if (game.getId() == null) {
+            return register(gameRepository.save(game));
+        }
+
+        if (isLive(game)) {
+            register(game);
+            markDirty(game);
+            return game;
+        }
+
+        GameSession session = sessions.remove(game.getId());
+        dirtyGames.remove(game.getId());
+        gameRepository.save(game);
+        retire(session != null ? session : new GameSession(game));
+        return game;
+    }
+
+    @Scheduled(fixedDelayString = "${game.session.flush-interval-ms:500}")
+    public void flushDirtyGames() {
+        Iterator<Long> iterator = dirtyGames.iterator();
+        while (iterator.hasNext()) {
+            Long gameId = iterator.next();
+            iterator.remove();
+
+            GameSession session = sessions.get(gameId);
+            if (session != null) {
+                gameMoveExecutor.submit(gameId, () -> flush(session));
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        for (GameSession session : sessions.values()) {
+            if (session.getLastAccessMillis() < cutoff) {
+                gameMoveExecutor.submit(session.getGameId(), () -> evictIfIdle(session, cutoff));
+            }
+        }
+
+        long retiredCutoff = System.currentTimeMillis() - finishedRetentionMillis;
+        for (GameSession session : retiredSessions.values()) {
+            if (session.getLastAccessMillis() < retiredCutoff && retiredSessions.remove(session.getGameId(), session)) {
+                gameStatePublisher.forget(session.getGameId());
+            }
+        }
+    }
+
+    private void retire(GameSession session) {
+        session.touch();
+        retiredSessions.put(session.getGameId(), session);
+    }
+
+    // Runs in the game's move mailbox
+    private void flush(GameSession session) {
+        // Finished or evicted in the meantime, and saved by whoever removed it
+        if (sessions.get(session.getGameId()) != session) {
+            return;
+        }
+        if (!save(session.getGame())) {
+            // Retried on the next tick
+            dirtyGames.add(session.getGameId());
+        }
+    }
+
+    // Runs in the game's move mailbox
+    private void evictIfIdle(GameSession session, long cutoff) {
+        Long gameId = session.getGameId();
+        if (session.getLastAccessMillis() >= cutoff || sessions.get(gameId) != session) {
+            return;
+        }
+        if (dirtyGames.remove(gameId) && !save(session.getGame())) {
+            dirtyGames.add(gameId);
+            return;
+        }
+        sessions.remove(gameId, session);
+        gameStatePublisher.forget(gameId);
+        log.info("Evicted idle game session {}", gameId);
+    }
+
+    @PreDestroy
+    public void flushAll() throws InterruptedException {
+        // Drain the move mailboxes first so no move changes a game while it is written
+        gameMoveExecutor.shutdown();
+
+        log.info("Flushing {} live game sessions before shutdown", sessions.size());
+        dirtyGames.clear();
+        sessions.values().forEach(session -> save(session.getGame()));
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private boolean save(Game game) {
+        try {
+            gameRepository.save(game);
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to persist game {}: {}", game.getId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private boolean isLive(Game game) {
+        return game.getGameStatusEnum() != GameStatusEnum.FINISHED;
+    }
+}
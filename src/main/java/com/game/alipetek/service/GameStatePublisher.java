@@ -0,0 +1,179 @@
+package com.game.alipetek.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.game.alipetek.dto.GameSnapshot;
+import com.game.alipetek.dto.GameStateEvent;
+import com.game.alipetek.dto.QuestionHint;
+import com.game.alipetek.model.Game;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes versioned game state to /topic/game-state/{gameId}. The first event for a game
+ * is a full snapshot, every later one only carries the fields that changed. Each version is
+ * converted to JSON once: the delta is cut from that tree and the same bytes go to players and
+ * spectators alike, while the snapshot bytes built from it serve REST reads, new subscriptions
+ * and the legacy topics until the next version. Must be called from the game's move mailbox so
+ * events leave in version order; the cached state lives until the session registry forgets it.
+ * Nothing on the topic reveals the answer, players get their QuestionHint on /user/queue/question-hint.
+ */
+@Component
+@Slf4j
+public class GameStatePublisher {
+
+    public static final String GAME_STATE_TOPIC = "/topic/game-state/";
+    public static final String GAME_STATE_QUEUE = "/queue/game-state";
+    public static final String QUESTION_HINT_QUEUE = "/queue/question-hint";
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Long, PublishedState> published = new ConcurrentHashMap<>();
+
+    private final Timer fanOutTimer;
+    private final DistributionSummary payloadSize;
+
+    public GameStatePublisher(SimpMessagingTemplate simpMessagingTemplate, ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.objectMapper = objectMapper;
+        this.fanOutTimer = Timer.builder("game.broadcast.fanout")
+                .description("Time to hand a game state event to every subscriber of its topic")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.payloadSize = DistributionSummary.builder("game.broadcast.payload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void publish(Game game) {
+        ObjectNode current = objectMapper.valueToTree(GameSnapshot.of(game));
+        PublishedState state = new PublishedState(game.getId(), game.getStateVersion(), current);
+        PublishedState previous = published.put(game.getId(), state);
+
+        if (previous == null) {
+            send(GAME_STATE_TOPIC + game.getId(), state.snapshotPayload());
+            sendQuestionHints(game);
+        } else {
+            ObjectNode changes = diff(previous.snapshot, current);
+            send(GAME_STATE_TOPIC + game.getId(), serialize(GameStateEvent.delta(game.getId(), state.version, changes)));
+            // A new question, or a second player who has not seen the current one yet
+            if (changes.has("currentQuestion") || changes.has("secondUser")) {
+                sendQuestionHints(game);
+            }
+        }
+    }
+
+    public byte[] snapshotPayload(Game game) {
+        PublishedState state = published.get(game.getId());
+        if (state == null || state.version != game.getStateVersion()) {
+            return serialize(GameStateEvent.snapshot(game.getId(), game.getStateVersion(), objectMapper.valueToTree(GameSnapshot.of(game))));
+        }
+        return state.snapshotPayload();
+    }
+
+    // Called by the session registry once the game has left memory
+    public void forget(Long gameId) {
+        published.remove(gameId);
+    }
+
+    // Resends the current snapshot to one session only, through /user/queue/game-state
+    public void sendSnapshot(Game game, String username, String sessionId) {
+        SimpMessageHeaderAccessor accessor = jsonHeaders();
+        accessor.setSessionId(sessionId);
+        simpMessagingTemplate.convertAndSendToUser(username, GAME_STATE_QUEUE, snapshotPayload(game), accessor.getMessageHeaders());
+        if (game.getPlayers().stream().anyMatch(player -> player.getUsername().equals(username))) {
+            sendQuestionHint(game, username);
+        }
+    }
+
+    private void sendQuestionHints(Game game) {
+        game.getPlayers().forEach(player -> sendQuestionHint(game, player.getUsername()));
+    }
+
+    private void sendQuestionHint(Game game, String username) {
+        if (game.getCurrentQuestion() != null) {
+            simpMessagingTemplate.convertAndSendToUser(username, QUESTION_HINT_QUEUE,
+                    QuestionHint.of(game.getId(), game.getStateVersion(), game.getCurrentQuestion()));
+        }
+    }
+
+    // Full Game payloads on the original topics, for clients that do not read /topic/game-state yet
+    public void sendLegacy(String destination, Object payload) {
+        simpMessagingTemplate.convertAndSend(destination, payload);
+    }
+
+    private void send(String destination, byte[] payload) {
+        Message<byte[]> message = MessageBuilder.createMessage(payload, jsonHeaders().getMessageHeaders());
+
+        payloadSize.record(payload.length);
+        fanOutTimer.record(() -> simpMessagingTemplate.send(destination, message));
+    }
+
+    private static SimpMessageHeaderAccessor jsonHeaders() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    // Only the top-level fields that changed since the previous snapshot
+    private ObjectNode diff(ObjectNode previous, ObjectNode current) {
+        ObjectNode changes = objectMapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = current.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!Objects.equals(previous.get(field.getKey()), field.getValue())) {
+                changes.set(field.getKey(), field.getValue());
+            }
+        }
+        return changes;
+    }
+
+    private byte[] serialize(GameStateEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize state of game " + event.getGameId(), e);
+        }
+    }
+
+    private final class PublishedState {
+        private final Long gameId;
+        private final long version;
+        private final ObjectNode snapshot;
+        private volatile byte[] snapshotPayload;
+
+        private PublishedState(Long gameId, long version, ObjectNode snapshot) {
+            this.gameId = gameId;
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+
+        // Racing readers at worst serialize the same immutable tree twice
+        private byte[] snapshotPayload() {
+            byte[] payload = snapshotPayload;
+            if (payload == null) {
+                payload = serialize(GameStateEvent.snapshot(gameId, version, snapshot));
+                snapshotPayload = payload;
+            }
+            return payload;
+        }
+    }
+}
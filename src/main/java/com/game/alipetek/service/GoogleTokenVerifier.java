@@ -0,0 +1,176 @@
+package com.game.alipetek.service;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.gson.GsonFactory;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One GoogleIdTokenVerifier for the whole application, sharing a single HTTP transport and
+ * Google's signing keys. The keys are cached for as long as the certificate endpoint's
+ * Cache-Control allows and refreshed on the BlockingTaskScheduler shortly before that runs
+ * out, so no login waits on a certificate fetch. Fetches use bounded connect and read
+ * timeouts.
+ */
+@Component
+@Slf4j
+public class GoogleTokenVerifier {
+
+    private static final Pattern MAX_AGE = Pattern.compile("\\bmax-age\\s*=\\s*(\\d+)");
+
+    private final GsonFactory jsonFactory = GsonFactory.getDefaultInstance();
+    private final HttpRequestFactory requestFactory;
+    private final GenericUrl certsUrl;
+    private final GoogleIdTokenVerifier verifier;
+    private final BlockingTaskScheduler blockingTaskScheduler;
+
+    private final Object refreshLock = new Object();
+    private volatile SigningKeys signingKeys;
+
+    @Value("${google.auth.keys-refresh-ahead-ms:300000}")
+    private long refreshAheadMillis;
+
+    @Value("${google.auth.keys-refresh-check-ms:60000}")
+    private long refreshCheckMillis;
+
+    public GoogleTokenVerifier(@Value("${spring.security.oauth2.client.registration.google.client-id}") String googleClientId,
+                               @Value("${google.auth.certs-url:https://www.googleapis.com/oauth2/v1/certs}") String certsUrl,
+                               @Value("${google.auth.connect-timeout-ms:3000}") int connectTimeoutMillis,
+                               @Value("${google.auth.read-timeout-ms:5000}") int readTimeoutMillis,
+                               BlockingTaskScheduler blockingTaskScheduler) {
+        NetHttpTransport transport = new NetHttpTransport();
+        this.requestFactory = transport.createRequestFactory(request -> request
+                .setConnectTimeout(connectTimeoutMillis)
+                .setReadTimeout(readTimeoutMillis)
+                .setParser(new JsonObjectParser(jsonFactory)));
+        this.certsUrl = new GenericUrl(certsUrl);
+        this.verifier = new CachedKeysVerifier(new GoogleIdTokenVerifier.Builder(transport, jsonFactory)
+                .setAudience(Collections.singletonList(googleClientId)));
+        this.blockingTaskScheduler = blockingTaskScheduler;
+    }
+
+    // Returns null when the token is not a valid Google ID token for this client
+    public GoogleIdToken verify(String idToken) throws GeneralSecurityException, IOException {
+        return verifier.verify(idToken);
+    }
+
+    // The first run warms the cache at startup
+    @PostConstruct
+    public void start() {
+        blockingTaskScheduler.scheduleWithFixedDelay("google-signing-keys", this::refreshIfExpiring, 0, refreshCheckMillis);
+    }
+
+    public void refreshIfExpiring() {
+        SigningKeys current = signingKeys;
+        if (current != null && current.expiresAtMillis - System.currentTimeMillis() >= refreshAheadMillis) {
+            return;
+        }
+        try {
+            signingKeys = fetch();
+            log.debug("Refreshed Google signing keys, valid until {}", signingKeys.expiresAtMillis);
+        } catch (GeneralSecurityException | IOException e) {
+            // The cached keys stay in use, a login past their expiry fetches them itself
+            log.warn("Could not refresh Google signing keys: {}", e.getMessage());
+        }
+    }
+
+    private List<PublicKey> currentKeys() throws GeneralSecurityException, IOException {
+        SigningKeys current = signingKeys;
+        if (current == null || current.expiresAtMillis <= System.currentTimeMillis()) {
+            synchronized (refreshLock) {
+                current = signingKeys;
+                if (current == null || current.expiresAtMillis <= System.currentTimeMillis()) {
+                    current = fetch();
+                    signingKeys = current;
+                }
+            }
+        }
+        return current.keys;
+    }
+
+    private SigningKeys fetch() throws GeneralSecurityException, IOException {
+        long now = System.currentTimeMillis();
+        HttpResponse response = requestFactory.buildGetRequest(certsUrl).execute();
+        try {
+            long cacheMillis = cacheTimeSeconds(response.getHeaders()) * 1000;
+            GenericJson certificates = response.parseAs(GenericJson.class);
+
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+            List<PublicKey> keys = new ArrayList<>(certificates.size());
+            for (Object certificate : certificates.values()) {
+                byte[] pem = String.valueOf(certificate).getBytes(StandardCharsets.UTF_8);
+                keys.add(certificateFactory.generateCertificate(new ByteArrayInputStream(pem)).getPublicKey());
+            }
+            return new SigningKeys(List.copyOf(keys), now + cacheMillis);
+        } finally {
+            response.disconnect();
+        }
+    }
+
+    // max-age less the time the response already spent in caches on the way
+    private static long cacheTimeSeconds(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl == null) {
+            return 0;
+        }
+        Matcher matcher = MAX_AGE.matcher(cacheControl);
+        if (!matcher.find()) {
+            return 0;
+        }
+        long age = headers.getAge() != null ? headers.getAge() : 0;
+        return Math.max(0, Long.parseLong(matcher.group(1)) - age);
+    }
+
+    // Checks audience, issuer and expiry as usual, but signatures against the shared key cache
+    private final class CachedKeysVerifier extends GoogleIdTokenVerifier {
+
+        private CachedKeysVerifier(GoogleIdTokenVerifier.Builder builder) {
+            super(builder);
+        }
+
+        @Override
+        public boolean verify(GoogleIdToken idToken) throws GeneralSecurityException, IOException {
+            if (!verifyPayload(idToken)) {
+                return false;
+            }
+            for (PublicKey key : currentKeys()) {
+                if (idToken.verifySignature(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class SigningKeys {
+        private final List<PublicKey> keys;
+        private final long expiresAtMillis;
+
+        private SigningKeys(List<PublicKey> keys, long expiresAtMillis) {
+            this.keys = keys;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.game.alipetek.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -12,10 +17,12 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
@@ -26,12 +33,66 @@ public class JwtService {
     @Value("${security.jwt.expiration-time}")
     private long jwtExpiration;
 
+    // Upper bound on verified tokens remembered at once
+    @Value("${security.jwt.cache-size:10000}")
+    private int cacheSize;
+
+    private Key signInKey;
+    private JwtParser jwtParser;
+
+    // SHA-256 of the token -> its verified claims, entries die with the token
+    private final ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public JwtService(MeterRegistry meterRegistry) {
+        this.cacheHits = Counter.builder("jwt.cache.hits").register(meterRegistry);
+        this.cacheMisses = Counter.builder("jwt.cache.misses").register(meterRegistry);
+        Gauge.builder("jwt.cache.size", verifiedTokens, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+    }
+
+    /**
+     * Verifies signature and expiry once and returns every claim of the token. A token seen
+     * before is answered from the cache without any crypto until it expires. Throws a
+     * JwtException when the token is malformed, forged or expired.
+     */
+    public Claims verifyToken(String token) {
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+
+        VerifiedToken cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (cached.expiresAtMillis > now) {
+                cacheHits.increment();
+                return cached.claims;
+            }
+            verifiedTokens.remove(digest, cached);
+        }
+
+        cacheMisses.increment();
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            if (verifiedTokens.size() >= cacheSize) {
+                evict(now);
+            }
+            verifiedTokens.put(digest, new VerifiedToken(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = verifyToken(token);
         return claimsResolver.apply(claims);
     }
 
@@ -67,29 +128,40 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        final Claims claims = verifyToken(token);
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Key getSignInKey() {
+        return signInKey;
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    // Drops expired entries first, and arbitrary ones when that is not enough to get under the bound
+    private void evict(long now) {
+        verifiedTokens.values().removeIf(entry -> entry.expiresAtMillis <= now);
+        Iterator<String> iterator = verifiedTokens.keySet().iterator();
+        while (verifiedTokens.size() >= cacheSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static final class VerifiedToken {
+        private final Claims claims;
+        private final long expiresAtMillis;
+
+        private VerifiedToken(Claims claims, long expiresAtMillis) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
+        }
     }
 }
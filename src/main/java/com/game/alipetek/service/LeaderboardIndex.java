@@ -0,0 +1,214 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Indexable skip list of players ordered by score, highest first, ties broken by user id.
+ * Every forward pointer also stores how many players it skips, so the rank of a player
+ * and the player at a given rank are both found in O(log n). Not thread safe.
+ */
+final class LeaderboardIndex {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Node head = new Node(0L, Integer.MAX_VALUE, MAX_LEVEL);
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private int level = 1;
+
+    int size() {
+        return nodes.size();
+    }
+
+    void update(Long id, String username, String avatarUrl, int score) {
+        Node node = nodes.get(id);
+        if (node != null && node.score != score) {
+            delete(node);
+            node = null;
+        }
+        if (node == null) {
+            node = insert(id, score);
+            nodes.put(id, node);
+        }
+        node.username = username;
+        node.avatarUrl = avatarUrl;
+    }
+
+    void remove(Long id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            delete(node);
+        }
+    }
+
+    Integer scoreOf(Long id) {
+        Node node = nodes.get(id);
+        return node != null ? node.score : null;
+    }
+
+    // Drops the lowest ranked player, returns its id or null when empty
+    Long removeLast() {
+        // nodeAt(0) is the head sentinel
+        if (size() == 0) {
+            return null;
+        }
+        Node last = nodeAt(size());
+        if (last == null) {
+            return null;
+        }
+        remove(last.id);
+        return last.id;
+    }
+
+    LeaderboardEntry find(Long id) {
+        Node node = nodes.get(id);
+        return node != null ? node.toEntry(rankOf(node)) : null;
+    }
+
+    // Up to limit entries starting at the given 1-based rank
+    List<LeaderboardEntry> range(int fromRank, int limit) {
+        List<LeaderboardEntry> entries = new ArrayList<>(Math.max(0, Math.min(limit, size() - fromRank + 1)));
+        Node node = fromRank >= 1 ? nodeAt(fromRank) : null;
+        for (int rank = fromRank; node != null && entries.size() < limit; rank++, node = node.next[0]) {
+            entries.add(node.toEntry(rank));
+        }
+        return entries;
+    }
+
+    // The player with up to radius players on each side
+    List<LeaderboardEntry> around(Long id, int radius) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            return List.of();
+        }
+        int rank = rankOf(node);
+        int fromRank = Math.max(1, rank - radius);
+        return range(fromRank, rank - fromRank + 1 + radius);
+    }
+
+    // Whether a sorts before the player with the given score and id
+    private static boolean precedes(Node a, int score, long id) {
+        return a.score > score || (a.score == score && a.id < id);
+    }
+
+    private Node insert(long id, int score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && precedes(x.next[i], score, id)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size();
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(id, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        return node;
+    }
+
+    private void delete(Node node) {
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && precedes(x.next[i], node.score, node.id)) {
+                x = x.next[i];
+            }
+            if (x.next[i] == node) {
+                x.span[i] += node.span[i] - 1;
+                x.next[i] = node.next[i];
+            } else {
+                x.span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+    }
+
+    private int rankOf(Node node) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && (x.next[i] == node || precedes(x.next[i], node.score, node.id))) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == node) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    private Node nodeAt(int rank) {
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == rank) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private static int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node {
+        private final long id;
+        private final int score;
+        private final Node[] next;
+        // Players skipped by next[i], counting the one it points to
+        private final int[] span;
+        private String username;
+        private String avatarUrl;
+
+        private Node(long id, int score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+
+        private LeaderboardEntry toEntry(int rank) {
+            return new LeaderboardEntry(id, rank, username, avatarUrl, score);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.dto.ScoreChange;
+import com.game.alipetek.model.User;
+import com.game.alipetek.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * All-time leaderboard held in memory. Loaded once from the users table at startup and kept
+ * current by ScoreChange events and the services that create users or change their name or
+ * avatar, so reads never touch the database and cost O(log n) plus the size of the page.
+ */
+@Service
+@Slf4j
+public class LeaderboardService {
+
+    private final UserRepository userRepository;
+    private final LeaderboardIndex index = new LeaderboardIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Value("${leaderboard.max-page-size:100}")
+    private int maxPageSize;
+
+    public LeaderboardService(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+
+        Gauge.builder("leaderboard.size", this, LeaderboardService::size)
+                .description("Players on the in-memory leaderboard")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        List<LeaderboardEntry> entries = userRepository.findLeaderboardEntries();
+        lock.writeLock().lock();
+        try {
+            entries.forEach(entry -> index.update(entry.getId(), entry.getUsername(), entry.getAvatarUrl(), entry.getScore()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded {} players into the leaderboard", entries.size());
+    }
+
+    // Call after a user was created or its username or avatar was saved
+    public void update(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // Scores only move through ScoreChange events, the entity's copy may predate the last one
+            Integer score = index.scoreOf(user.getId());
+            index.update(user.getId(), user.getUsername(), user.getAvatarUrl(), score != null ? score : user.getScore());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onScoreChange(ScoreChange scoreChange) {
+        lock.writeLock().lock();
+        try {
+            index.update(scoreChange.getUserId(), scoreChange.getUsername(), scoreChange.getAvatarUrl(), scoreChange.getScore());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<LeaderboardEntry> getPage(int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        long fromRank = (long) Math.max(0, page) * pageSize + 1;
+        if (fromRank > Integer.MAX_VALUE) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            return index.range((int) fromRank, pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<LeaderboardEntry> getRank(Long userId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(index.find(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The player with up to radius players on each side
+    public List<LeaderboardEntry> getAround(Long userId, int radius) {
+        lock.readLock().lock();
+        try {
+            return index.around(userId, Math.max(0, Math.min(radius, maxPageSize / 2)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
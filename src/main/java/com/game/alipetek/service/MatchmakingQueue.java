@@ -0,0 +1,129 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Games waiting for a random opponent. Each waiting game holds a ticket that can be claimed
+ * exactly once (compare-and-set), so two joiners can never be handed the same game.
+ */
+@Component
+@Slf4j
+public class MatchmakingQueue {
+
+    private final ConcurrentLinkedQueue<Ticket> waiting = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Long, Ticket> ticketsByGame = new ConcurrentHashMap<>();
+
+    private final Timer timeToMatch;
+    private final Counter matchedCounter;
+    private final Counter cancelledCounter;
+
+    public MatchmakingQueue(MeterRegistry meterRegistry) {
+        Gauge.builder("matchmaking.queue.depth", ticketsByGame, Map::size)
+                .description("Games waiting for a random opponent")
+                .register(meterRegistry);
+        this.timeToMatch = Timer.builder("matchmaking.time.to.match")
+                .description("Time a game waited in the queue before being matched")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.matchedCounter = Counter.builder("matchmaking.matched").register(meterRegistry);
+        this.cancelledCounter = Counter.builder("matchmaking.cancelled").register(meterRegistry);
+    }
+
+    public void enqueue(Long gameId, String owner) {
+        Ticket ticket = new Ticket(gameId, owner, System.nanoTime());
+        if (ticketsByGame.putIfAbsent(gameId, ticket) == null) {
+            waiting.offer(ticket);
+        }
+    }
+
+    public Optional<Long> claimNext(String username) {
+        List<Ticket> ownTickets = new ArrayList<>();
+        try {
+            Ticket ticket;
+            while ((ticket = waiting.poll()) != null) {
+                if (ticket.isClaimed()) {
+                    continue;
+                }
+                // Never pair a player with their own waiting game
+                if (ticket.owner.equals(username)) {
+                    ownTickets.add(ticket);
+                    continue;
+                }
+                if (ticket.claim()) {
+                    ticketsByGame.remove(ticket.gameId, ticket);
+                    timeToMatch.record(System.nanoTime() - ticket.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+                    matchedCounter.increment();
+                    return Optional.of(ticket.gameId);
+                }
+            }
+            return Optional.empty();
+        } finally {
+            waiting.addAll(ownTickets);
+        }
+    }
+
+    // Claims a specific game, e.g. when a friend joins it by id. False if it was already claimed or never queued.
+    public boolean claim(Long gameId) {
+        Ticket ticket = ticketsByGame.remove(gameId);
+        if (ticket == null) {
+            return false;
+        }
+        if (ticket.claim()) {
+            timeToMatch.record(System.nanoTime() - ticket.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+            matchedCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isQueued(Long gameId) {
+        return ticketsByGame.containsKey(gameId);
+    }
+
+    public void cancel(Long gameId) {
+        Ticket ticket = ticketsByGame.remove(gameId);
+        if (ticket != null && ticket.claim()) {
+            cancelledCounter.increment();
+            log.info("Removed game {} from matchmaking", gameId);
+        }
+    }
+
+    public int depth() {
+        return ticketsByGame.size();
+    }
+
+    private static final class Ticket {
+        private final Long gameId;
+        private final String owner;
+        private final long enqueuedAtNanos;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Ticket(Long gameId, String owner, long enqueuedAtNanos) {
+            this.gameId = gameId;
+            this.owner = owner;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        private boolean isClaimed() {
+            return claimed.get();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Forfeits waiting out the reconnect grace period of a dropped player. A player has at most
+ * one pending forfeit, keyed by username, and reconnecting before it fires cancels it.
+ * Both paths stay in memory; only a forfeit that actually fires reaches the database.
+ * Whoever removes an entry from the map owns it, so the timer and a reconnect can never
+ * both act on the same forfeit, however short the grace period.
+ */
+@Component
+@Slf4j
+public class PendingForfeits {
+
+    private final TimerWheel timerWheel;
+    private final long graceMillis;
+    private final ConcurrentHashMap<String, PendingForfeit> pending = new ConcurrentHashMap<>();
+
+    private final Counter scheduledCounter;
+    private final Counter reconnectedCounter;
+
+    public PendingForfeits(TimerWheel timerWheel, MeterRegistry meterRegistry,
+                           @Value("${game.reconnect.grace-ms:15000}") long graceMillis) {
+        this.timerWheel = timerWheel;
+        this.graceMillis = Math.max(0, graceMillis);
+        this.scheduledCounter = Counter.builder("game.reconnect.grace.started")
+                .description("Disconnects that started a reconnect grace period")
+                .register(meterRegistry);
+        this.reconnectedCounter = Counter.builder("game.reconnect.grace.recovered")
+                .description("Players that reconnected before their forfeit fired")
+                .register(meterRegistry);
+    }
+
+    public long getGraceMillis() {
+        return graceMillis;
+    }
+
+    // Runs forfeit(gameId, username) once the grace period passes without a reconnect
+    public void schedule(Long gameId, String username, BiConsumer<Long, String> forfeit) {
+        if (graceMillis == 0) {
+            forfeit.accept(gameId, username);
+            return;
+        }
+
+        // In the map before the timer exists, so even an immediate fire finds its entry
+        PendingForfeit forfeitEntry = new PendingForfeit(gameId);
+        PendingForfeit previous = pending.put(username, forfeitEntry);
+        if (previous != null) {
+            previous.cancelTimeout();
+        }
+        forfeitEntry.timeout = timerWheel.schedule(() -> {
+            if (pending.remove(username, forfeitEntry)) {
+                forfeit.accept(gameId, username);
+            }
+        }, graceMillis, TimeUnit.MILLISECONDS);
+        scheduledCounter.increment();
+        log.info("User {} dropped from game {}, forfeiting in {} ms unless they reconnect", username, gameId, graceMillis);
+    }
+
+    // Returns the game the user was about to forfeit, if the cancellation beat the timer
+    public Optional<Long> cancel(String username) {
+        PendingForfeit forfeitEntry = username != null ? pending.remove(username) : null;
+        if (forfeitEntry == null) {
+            return Optional.empty();
+        }
+        forfeitEntry.cancelTimeout();
+        reconnectedCounter.increment();
+        return Optional.of(forfeitEntry.gameId);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private static final class PendingForfeit {
+        private final Long gameId;
+        // Null until scheduled, a timer firing after its entry was removed does nothing anyway
+        private volatile TimerWheel.Timeout timeout;
+
+        private PendingForfeit(Long gameId) {
+            this.gameId = gameId;
+        }
+
+        private void cancelTimeout() {
+            TimerWheel.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.GameStatusEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Server-side deadline for the letter each in-progress game is on. Every game holds at most
+ * one timer on the shared TimerWheel, and expiry is handed to the game's move mailbox so it
+ * is applied exactly like a move. The deadline is derived from the game's persisted
+ * questionStartedAt, so a game read back from the database is re-armed where it left off.
+ * Must be called from the game's move mailbox.
+ */
+@Component
+public class QuestionDeadlines {
+
+    private final TimerWheel timerWheel;
+    private final GameMoveExecutor gameMoveExecutor;
+    private final long timeLimitMillis;
+    private final ConcurrentHashMap<Long, Deadline> deadlines = new ConcurrentHashMap<>();
+
+    private final Counter expiredCounter;
+
+    public QuestionDeadlines(TimerWheel timerWheel, GameMoveExecutor gameMoveExecutor, MeterRegistry meterRegistry,
+                             @Value("${game.question.time-limit-ms:30000}") long timeLimitMillis) {
+        this.timerWheel = timerWheel;
+        this.gameMoveExecutor = gameMoveExecutor;
+        this.timeLimitMillis = timeLimitMillis;
+
+        Gauge.builder("game.question.deadlines", deadlines, Map::size)
+                .description("In-progress games with a running question timer")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("game.question.expired")
+                .description("Letters that ran out of time")
+                .register(meterRegistry);
+    }
+
+    // Starts the timer when the game moved on to a new letter or was reloaded, stops it once the game is over
+    public void track(Game game, BiConsumer<Long, String> onExpire) {
+        if (timeLimitMillis <= 0) {
+            return;
+        }
+
+        Long gameId = game.getId();
+        if (game.getGameStatusEnum() != GameStatusEnum.IN_PROGRESS) {
+            cancel(gameId);
+            game.setQuestionDeadline(null);
+            return;
+        }
+
+        String letter = game.getCurrentLetter();
+        Deadline current = deadlines.get(gameId);
+        if (current != null && current.letter.equals(letter)) {
+            return;
+        }
+        if (current != null) {
+            current.timeout.cancel();
+        }
+
+        // Games saved before the start time was persisted get a full limit from now
+        long now = System.currentTimeMillis();
+        Long startedAt = game.getQuestionStartedAt();
+        long deadlineMillis = (startedAt != null ? startedAt : now) + timeLimitMillis;
+
+        TimerWheel.Timeout timeout = timerWheel.schedule(
+                () -> gameMoveExecutor.submit(gameId, () -> expire(gameId, letter, onExpire)),
+                Math.max(0, deadlineMillis - now), TimeUnit.MILLISECONDS);
+        deadlines.put(gameId, new Deadline(letter, timeout));
+        game.setQuestionDeadline(deadlineMillis);
+    }
+
+    public void cancel(Long gameId) {
+        Deadline deadline = deadlines.remove(gameId);
+        if (deadline != null) {
+            deadline.timeout.cancel();
+        }
+    }
+
+    private void expire(Long gameId, String letter, BiConsumer<Long, String> onExpire) {
+        Deadline deadline = deadlines.get(gameId);
+        // A move already advanced the letter between the timer firing and reaching the mailbox
+        if (deadline == null || !deadline.letter.equals(letter) || !deadline.timeout.isExpired()) {
+            return;
+        }
+        deadlines.remove(gameId, deadline);
+        expiredCounter.increment();
+        onExpire.accept(gameId, letter);
+    }
+
+    private static final class Deadline {
+        private final String letter;
+        private final TimerWheel.Timeout timeout;
+
+        private Deadline(String letter, TimerWheel.Timeout timeout) {
+            this.letter = letter;
+            this.timeout = timeout;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.model.Question;
+import com.game.alipetek.model.QuestionDifficultyEnum;
+import com.game.alipetek.model.QuestionSlots;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable snapshot of the question bank bucketed by letter (A-Z) and difficulty.
+ * Each bucket is a primitive array of question ids, so picking a random question
+ * is a single array index. Inserts produce a new index instead of mutating this one.
+ */
+public final class QuestionIndex {
+
+    private static final long[] NO_IDS = new long[0];
+
+    private final long[][] buckets;
+    private final Map<Long, Question> questionsById;
+
+    private QuestionIndex(long[][] buckets, Map<Long, Question> questionsById) {
+        this.buckets = buckets;
+        this.questionsById = questionsById;
+    }
+
+    public static QuestionIndex of(Collection<Question> questions) {
+        int[] counts = new int[QuestionSlots.COUNT];
+        for (Question question : questions) {
+            int bucket = bucketOf(question);
+            if (bucket >= 0) {
+                counts[bucket]++;
+            }
+        }
+
+        long[][] buckets = new long[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            buckets[i] = counts[i] == 0 ? NO_IDS : new long[counts[i]];
+        }
+
+        int[] positions = new int[counts.length];
+        Map<Long, Question> questionsById = new HashMap<>();
+        for (Question question : questions) {
+            int bucket = bucketOf(question);
+            if (bucket >= 0) {
+                buckets[bucket][positions[bucket]++] = question.getId();
+                questionsById.put(question.getId(), question);
+            }
+        }
+
+        return new QuestionIndex(buckets, Collections.unmodifiableMap(questionsById));
+    }
+
+    // Idempotent, so an insert already picked up by a rebuild is not indexed twice
+    public QuestionIndex with(Question question) {
+        int bucket = bucketOf(question);
+        if (bucket < 0 || questionsById.containsKey(question.getId())) {
+            return this;
+        }
+
+        long[][] copy = buckets.clone();
+        long[] ids = Arrays.copyOf(buckets[bucket], buckets[bucket].length + 1);
+        ids[ids.length - 1] = question.getId();
+        copy[bucket] = ids;
+
+        Map<Long, Question> questionsById = new HashMap<>(this.questionsById);
+        questionsById.put(question.getId(), question);
+
+        return new QuestionIndex(copy, Collections.unmodifiableMap(questionsById));
+    }
+
+    private static int bucketOf(Question question) {
+        return question.getId() != null ? QuestionSlots.of(question) : -1;
+    }
+
+    public Question random(char letter, QuestionDifficultyEnum difficulty) {
+        int bucket = QuestionSlots.of(letter, difficulty);
+        if (bucket < 0) {
+            return null;
+        }
+
+        long[] ids = buckets[bucket];
+        if (ids.length == 0) {
+            return null;
+        }
+        return questionsById.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    // One random question id for every letter and difficulty pair, in letter order
+    public long[] randomDeck() {
+        long[] deck = new long[buckets.length];
+        int size = 0;
+        for (long[] ids : buckets) {
+            if (ids.length > 0) {
+                deck[size++] = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+            }
+        }
+        return size == deck.length ? deck : Arrays.copyOf(deck, size);
+    }
+
+    public Question get(Long id) {
+        return questionsById.get(id);
+    }
+
+    public int size() {
+        return questionsById.size();
+    }
+}
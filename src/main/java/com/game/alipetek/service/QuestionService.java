@@ -4,20 +4,64 @@ import com.game.alipetek.dto.CreateQuestionRequest;
 import com.game.alipetek.model.Question;
 import com.game.alipetek.model.QuestionDifficultyEnum;
 import com.game.alipetek.repository.QuestionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
+@Slf4j
 public class QuestionService {
 
     private final QuestionRepository questionRepository;
 
+    // Rebuilds are serialized by the lock, inserts never take it
+    private final Object indexLock = new Object();
+    private final AtomicReference<QuestionIndex> questionIndex = new AtomicReference<>();
+    // Bumped by every insert before it touches the index, even while there is no index yet
+    private final AtomicLong insertGeneration = new AtomicLong();
+
     public QuestionService(QuestionRepository questionRepository) {
         this.questionRepository = questionRepository;
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildQuestionIndex() {
+        synchronized (indexLock) {
+            QuestionIndex index = rebuildQuestionIndex();
+            log.info("Question index built with {} questions", index.size());
+        }
+    }
+
+    public QuestionIndex getQuestionIndex() {
+        QuestionIndex index = questionIndex.get();
+        if (index == null) {
+            synchronized (indexLock) {
+                index = questionIndex.get();
+                if (index == null) {
+                    index = rebuildQuestionIndex();
+                }
+            }
+        }
+        return index;
+    }
+
+    // Reads the bank again when an insert landed while it was read, whether or not there was an index to add it to
+    private QuestionIndex rebuildQuestionIndex() {
+        while (true) {
+            long generation = insertGeneration.get();
+            QuestionIndex current = questionIndex.get();
+            QuestionIndex rebuilt = QuestionIndex.of(questionRepository.findAll());
+            if (questionIndex.compareAndSet(current, rebuilt) && insertGeneration.get() == generation) {
+                return rebuilt;
+            }
+        }
+    }
+
     public Question createQuestion(CreateQuestionRequest createQuestionRequest) {
         if (createQuestionRequest == null) {
             // TODO: Exception Handling
@@ -38,58 +82,33 @@ public class QuestionService {
                 .build();
 
         questionRepository.save(question);
+
+        // A rebuild that started before the save sees the new generation and reads the bank again
+        insertGeneration.incrementAndGet();
+        questionIndex.updateAndGet(index -> index != null ? index.with(question) : null);
         return question;
     }
 
     public Question getFirstQuestion(int diceRoll) {
-        Random random = new Random();
-
         QuestionDifficultyEnum difficulty = QuestionDifficultyEnum.values()[diceRoll - 1];
-        List<Question> matchingQuestions = questionRepository.findAll().stream()
-                .filter(q -> q.getLetter().toString().equalsIgnoreCase("A") &&
-                        q.getQuestionDifficultyEnum() == difficulty)
-                .collect(Collectors.toList());
-
-        Question selectedQuestion = null;
-        if (!matchingQuestions.isEmpty()) {
-            selectedQuestion = matchingQuestions.get(random.nextInt(matchingQuestions.size()));
-        }
-
-        return selectedQuestion;
+        return getQuestionIndex().random('A', difficulty);
     }
 
-    public Question getQuestionById(Long id) {
-        return questionRepository.findById(id).get();
-    }
+    public List<Question> getQuestions(long[] questionIds) {
+        if (questionIds == null) {
+            return Collections.emptyList();
+        }
 
-    public List<Question> loadQuestions() {
-        List<Question> allQuestions = questionRepository.findAll();
-        // Group questions by letter
-        Map<Character, List<Question>> questionsByLetter = allQuestions.stream()
-                .collect(Collectors.groupingBy(Question::getLetter));
-
-        List<Question> selectedQuestions = new ArrayList<>();
-
-        for (char letter = 'A'; letter <= 'Z'; letter++) {
-            // Check for NullPointerException
-            List<Question> questionsForLetter = questionsByLetter.getOrDefault(letter, Collections.emptyList());
-
-            // Group lettered-questions by difficulty
-            Map<QuestionDifficultyEnum, List<Question>> questionsByDifficulty = questionsForLetter.stream()
-                    .collect(Collectors.groupingBy(Question::getQuestionDifficultyEnum));
-
-            // Fill selectedQuestions list with same letter and different difficulties
-            for (QuestionDifficultyEnum difficulty : QuestionDifficultyEnum.values()) {
-                List<Question> questionsForDifficulty = questionsByDifficulty.getOrDefault(difficulty, Collections.emptyList());
-                // Check if we have questions with different difficulties
-                if (!questionsForDifficulty.isEmpty()) {
-                    // Pick random question from difficulty
-                    Question randomQuestion = questionsForDifficulty.get(new Random().nextInt(questionsForDifficulty.size()));
-                    selectedQuestions.add(randomQuestion);
-                }
+        List<Question> questions = new ArrayList<>(questionIds.length);
+        for (long questionId : questionIds) {
+            Question question = getQuestionIndex().get(questionId);
+            if (question == null) {
+                question = questionRepository.findById(questionId).orElse(null);
+            }
+            if (question != null) {
+                questions.add(question);
             }
         }
-
-        return selectedQuestions;
+        return questions;
     }
 }
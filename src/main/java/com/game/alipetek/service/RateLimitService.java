@@ -0,0 +1,70 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Charges every request to its client IP and, once authenticated, to its user as well, and
+ * rejects it when either bucket is empty. The IP limit is a multiple of the user limit so
+ * players behind one NAT or proxy do not starve each other. Client IPs come from
+ * X-Forwarded-For as resolved by the servlet container for trusted proxies
+ * (server.forward-headers-strategy).
+ */
+@Service
+@Slf4j
+public class RateLimitService {
+
+    private final RateLimiter rateLimiter;
+    private final Counter rejectedRest;
+    private final Counter rejectedStomp;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${max.requests.per.minute}")
+    private int maxRequestsPerUser;
+
+    @Value("${rate-limit.max-requests-per-ip-per-minute:3000}")
+    private int maxRequestsPerIp;
+
+    public RateLimitService(RateLimiter rateLimiter, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.rejectedRest = Counter.builder("rate.limit.rejected").tag("channel", "rest").register(meterRegistry);
+        this.rejectedStomp = Counter.builder("rate.limit.rejected").tag("channel", "stomp").register(meterRegistry);
+    }
+
+    public boolean allowRequest(String username, String ip) {
+        if (allow(username, ip)) {
+            return true;
+        }
+        rejectedRest.increment();
+        return false;
+    }
+
+    public boolean allowMessage(String username, String ip) {
+        if (allow(username, ip)) {
+            return true;
+        }
+        rejectedStomp.increment();
+        return false;
+    }
+
+    private boolean allow(String username, String ip) {
+        if (!enabled) {
+            return true;
+        }
+        // A user over the limit is turned away before it can drain the bucket it shares with its address
+        if (username != null && !rateLimiter.tryAcquire("user:" + username, maxRequestsPerUser)) {
+            log.debug("Rate limit exceeded for user {}", username);
+            return false;
+        }
+        if (ip != null && !rateLimiter.tryAcquire("ip:" + ip, maxRequestsPerIp)) {
+            log.debug("Rate limit exceeded for ip {}", ip);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+package com.game.alipetek.service;
+
+/**
+ * Admits at most maxPerMinute requests per key. Keys are namespaced by the caller, e.g.
+ * "user:alice" or "ip:10.0.0.1", and each namespace passes its own limit.
+ */
+public interface RateLimiter {
+
+    boolean tryAcquire(String key, int maxPerMinute);
+}
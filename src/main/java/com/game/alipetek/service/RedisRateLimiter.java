@@ -0,0 +1,103 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding-window limiter shared by every node through Redis. Each key is a sorted set of
+ * request timestamps; one Lua script trims the window, counts and records the request
+ * atomically, using the Redis clock so nodes need not agree on time. Connections come from
+ * a JedisPool. When Redis is unreachable requests are let through rather than failing,
+ * and counted in rate.limit.redis.fail.open.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.backend", havingValue = "redis")
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+    private static final long WINDOW_MICROS = 60_000_000L;
+
+    private static final String SLIDING_WINDOW_SCRIPT = """
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            local window = tonumber(ARGV[1])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now - window)
+            if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[2]) then
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], now, ARGV[3])
+            redis.call('PEXPIRE', KEYS[1], math.ceil(window / 1000))
+            return 1
+            """;
+
+    private final JedisPool jedisPool;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter failOpen;
+    private volatile String scriptSha;
+
+    public RedisRateLimiter(@Value("${spring.data.redis.host}") String host,
+                            @Value("${spring.data.redis.port}") int port,
+                            @Value("${rate-limit.redis.pool-size:16}") int poolSize,
+                            MeterRegistry meterRegistry) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(poolSize);
+        poolConfig.setMaxIdle(poolSize);
+        this.jedisPool = new JedisPool(poolConfig, host, port);
+        this.failOpen = Counter.builder("rate.limit.redis.fail.open")
+                .description("Requests let through unchecked because Redis could not be reached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean tryAcquire(String key, int maxPerMinute) {
+        // Unique per request, two requests in the same microsecond must both count
+        String member = nodeId + ":" + sequence.incrementAndGet();
+        List<String> keys = List.of(KEY_PREFIX + key);
+        List<String> args = List.of(String.valueOf(WINDOW_MICROS), String.valueOf(maxPerMinute), member);
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result;
+            try {
+                result = jedis.evalsha(scriptSha(jedis), keys, args);
+            } catch (JedisDataException e) {
+                // NOSCRIPT after a Redis restart or failover, load it again
+                scriptSha = null;
+                result = jedis.evalsha(scriptSha(jedis), keys, args);
+            }
+            return Long.valueOf(1L).equals(result);
+        } catch (Exception e) {
+            failOpen.increment();
+            log.warn("Rate limiter could not reach Redis, letting request for {} through: {}", key, e.getMessage());
+            return true;
+        }
+    }
+
+    private String scriptSha(Jedis jedis) {
+        String sha = scriptSha;
+        if (sha == null) {
+            sha = jedis.scriptLoad(SLIDING_WINDOW_SCRIPT);
+            scriptSha = sha;
+        }
+        return sha;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jedisPool.close();
+    }
+}
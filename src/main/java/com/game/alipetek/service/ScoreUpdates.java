@@ -0,0 +1,253 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.ScoreChange;
+import com.game.alipetek.model.ScoreSourceEnum;
+import com.game.alipetek.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Score changes from game results, applied as increments. Points for the same user are
+ * summed in memory for a short window, then every pending user is written with one
+ * batched UPDATE users SET score = score + ? in a single transaction, so concurrent games
+ * never overwrite each other's points. Answer points are also added to the player's
+ * leaderboard_daily_points row in the same transaction, so WindowedLeaderboards can rebuild
+ * its running periods after a restart. Each committed change is published as a ScoreChange
+ * application event.
+ * <p>
+ * Pending increments live in memory only: a crash or kill -9 loses at most the last
+ * flush interval (score.updates.flush-interval-ms, 250 ms by default) of points, plus a
+ * batch whose flush was failing at the time. A graceful shutdown flushes once the web
+ * server has stopped taking requests, and again when the bean is destroyed, both while
+ * the datasource is still open.
+ */
+@Component
+@Slf4j
+public class ScoreUpdates implements SmartLifecycle {
+
+    // Stops after the web server (DEFAULT_PHASE - 1024/2048), long before any bean is destroyed
+    private static final int SHUTDOWN_PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private static final String INCREMENT_SQL = "UPDATE users SET score = score + ? WHERE id = ?";
+    private static final String INCREMENT_DAY_SQL = "UPDATE leaderboard_daily_points SET points = points + ? WHERE game_day = ? AND user_id = ?";
+    // A concurrent insert from another instance fails the flush, it is retried as an update on the next run
+    private static final String INSERT_DAY_SQL = "INSERT INTO leaderboard_daily_points (game_day, user_id, points) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WindowedLeaderboards windowedLeaderboards;
+
+    private final ConcurrentHashMap<Long, PendingScore> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RankedDay, Integer> pendingRanked = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private final Counter flushedUsers;
+    private final Counter failedFlushes;
+
+    @Value("${score.updates.batch-size:500}")
+    private int batchSize;
+
+    public ScoreUpdates(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        ApplicationEventPublisher eventPublisher, WindowedLeaderboards windowedLeaderboards,
+                        MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.windowedLeaderboards = windowedLeaderboards;
+
+        Gauge.builder("score.updates.pending", pending, Map::size)
+                .description("Users with score increments waiting to be flushed")
+                .register(meterRegistry);
+        this.flushedUsers = Counter.builder("score.updates.flushed")
+                .description("Per-user score increments written to the database")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("score.updates.failed")
+                .description("Flushes rolled back and retried on the next run")
+                .register(meterRegistry);
+    }
+
+    // Live games hold detached copies of their players, their score is bumped in place for display
+    public void add(User user, int points, ScoreSourceEnum source) {
+        if (user == null || user.getId() == null || points == 0) {
+            return;
+        }
+        pending.merge(user.getId(), new PendingScore(user.getUsername(), user.getAvatarUrl(), points), PendingScore::plus);
+        user.setScore(user.getScore() + points);
+        if (source == ScoreSourceEnum.ANSWER_POINTS) {
+            LocalDate day = windowedLeaderboards.record(user, points);
+            if (day != null) {
+                pendingRanked.merge(new RankedDay(day, user.getId()), points, Integer::sum);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${score.updates.flush-interval-ms:250}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Lock rows in id order so flushes from several instances cannot deadlock
+        List<Long> candidates = new ArrayList<>(pending.keySet());
+        Collections.sort(candidates);
+        List<Long> userIds = new ArrayList<>(candidates.size());
+        Map<Long, PendingScore> batch = new HashMap<>();
+        for (Long userId : candidates) {
+            PendingScore score = pending.remove(userId);
+            if (score != null) {
+                userIds.add(userId);
+                batch.put(userId, score);
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        Map<RankedDay, Integer> rankedBatch = new HashMap<>();
+        for (RankedDay key : new ArrayList<>(pendingRanked.keySet())) {
+            Integer points = pendingRanked.remove(key);
+            if (points != null) {
+                rankedBatch.put(key, points);
+            }
+        }
+        List<RankedDay> rankedDays = new ArrayList<>(rankedBatch.keySet());
+        rankedDays.sort(Comparator.comparing(RankedDay::day).thenComparing(RankedDay::userId));
+
+        Map<Long, Integer> scores;
+        try {
+            scores = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(INCREMENT_SQL, userIds, batchSize, (ps, userId) -> {
+                    ps.setInt(1, batch.get(userId).points);
+                    ps.setLong(2, userId);
+                });
+                addRankedPoints(rankedDays, rankedBatch);
+                return currentScores(userIds);
+            });
+        } catch (DataAccessException e) {
+            // Nothing was committed, hand the increments back for the next run
+            batch.forEach((userId, score) -> pending.merge(userId, score, PendingScore::plus));
+            rankedBatch.forEach((key, points) -> pendingRanked.merge(key, points, Integer::sum));
+            failedFlushes.increment();
+            log.error("Could not flush score increments for {} users: {}", batch.size(), e.getMessage());
+            return;
+        }
+
+        flushedUsers.increment(batch.size());
+        batch.forEach((userId, score) -> {
+            Integer current = scores.get(userId);
+            if (current != null) {
+                eventPublisher.publishEvent(new ScoreChange(userId, score.username, score.avatarUrl, score.points, current));
+            }
+        });
+    }
+
+    // Updates the existing day rows, then inserts the ones the update did not find
+    private void addRankedPoints(List<RankedDay> rankedDays, Map<RankedDay, Integer> rankedBatch) {
+        if (rankedDays.isEmpty()) {
+            return;
+        }
+        int[][] updated = jdbcTemplate.batchUpdate(INCREMENT_DAY_SQL, rankedDays, batchSize, (ps, key) -> {
+            ps.setInt(1, rankedBatch.get(key));
+            ps.setObject(2, key.day());
+            ps.setLong(3, key.userId());
+        });
+        List<RankedDay> missing = new ArrayList<>();
+        int i = 0;
+        for (int[] chunk : updated) {
+            for (int count : chunk) {
+                if (count == 0) {
+                    missing.add(rankedDays.get(i));
+                }
+                i++;
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_DAY_SQL, missing, batchSize, (ps, key) -> {
+                ps.setObject(1, key.day());
+                ps.setLong(2, key.userId());
+                ps.setInt(3, rankedBatch.get(key));
+            });
+        }
+    }
+
+    private Map<Long, Integer> currentScores(List<Long> userIds) {
+        Map<Long, Integer> scores = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<Long> chunk = userIds.subList(from, Math.min(userIds.size(), from + batchSize));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT id, score FROM users WHERE id IN (" + placeholders + ")",
+                    rs -> {
+                        scores.put(rs.getLong("id"), rs.getInt("score"));
+                    },
+                    chunk.toArray());
+        }
+        return scores;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SHUTDOWN_PHASE;
+    }
+
+    // Catches increments from moves drained from the game mailboxes after stop(), the datasource closes after this bean
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private record RankedDay(LocalDate day, Long userId) {
+    }
+
+    private static final class PendingScore {
+        private final String username;
+        private final String avatarUrl;
+        private final int points;
+
+        private PendingScore(String username, String avatarUrl, int points) {
+            this.username = username;
+            this.avatarUrl = avatarUrl;
+            this.points = points;
+        }
+
+        private PendingScore plus(PendingScore other) {
+            return new PendingScore(username, avatarUrl, points + other.points);
+        }
+    }
+}
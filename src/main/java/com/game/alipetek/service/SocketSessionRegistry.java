@@ -0,0 +1,88 @@
+package com.game.alipetek.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maps STOMP session ids to the user that opened them and the game they play in,
+ * so disconnects resolve to a game without a database lookup.
+ */
+@Component
+public class SocketSessionRegistry {
+
+    private final ConcurrentHashMap<String, SocketSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> sessionIdsByUsername = new ConcurrentHashMap<>();
+
+    public void register(String sessionId, String username) {
+        if (sessionId == null || username == null) {
+            return;
+        }
+        sessions.computeIfAbsent(sessionId, id -> new SocketSession(id, username));
+        sessionIdsByUsername.computeIfAbsent(username, name -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    public void bindGame(String sessionId, String username, Long gameId) {
+        if (sessionId == null || username == null) {
+            return;
+        }
+        register(sessionId, username);
+        SocketSession session = sessions.get(sessionId);
+        if (session != null) {
+            session.gameId = gameId;
+        }
+    }
+
+    // The session reconnected into a live game and still needs its snapshot resent
+    public void markResync(String sessionId) {
+        find(sessionId).ifPresent(session -> session.resyncPending.set(true));
+    }
+
+    public boolean claimResync(String sessionId) {
+        return find(sessionId).map(session -> session.resyncPending.compareAndSet(true, false)).orElse(false);
+    }
+
+    public Optional<SocketSession> find(String sessionId) {
+        return sessionId != null ? Optional.ofNullable(sessions.get(sessionId)) : Optional.empty();
+    }
+
+    public Optional<SocketSession> remove(String sessionId) {
+        SocketSession session = sessionId != null ? sessions.remove(sessionId) : null;
+        if (session != null) {
+            sessionIdsByUsername.computeIfPresent(session.username, (name, sessionIds) -> {
+                sessionIds.remove(sessionId);
+                return sessionIds.isEmpty() ? null : sessionIds;
+            });
+        }
+        return Optional.ofNullable(session);
+    }
+
+    public Set<String> getSessionIds(String username) {
+        Set<String> sessionIds = sessionIdsByUsername.get(username);
+        return sessionIds != null ? Collections.unmodifiableSet(sessionIds) : Collections.emptySet();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @Getter
+    public static class SocketSession {
+        private final String sessionId;
+        private final String username;
+        private volatile Long gameId;
+        @Getter(AccessLevel.NONE)
+        private final AtomicBoolean resyncPending = new AtomicBoolean();
+
+        private SocketSession(String sessionId, String username) {
+            this.sessionId = sessionId;
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timer wheel shared by every game timer. Scheduling and cancelling only touch a
+ * lock-free queue, a single worker thread moves timers into their bucket and expires one
+ * bucket per tick, so hundreds of thousands of pending timers cost one object each and
+ * no thread or ScheduledFuture of their own. Timers fire at most one tick late.
+ * Tasks run on the wheel thread and must hand real work off elsewhere.
+ */
+@Component
+@Slf4j
+public class TimerWheel {
+
+    // Upper bound on timers moved into the wheel per tick, the rest wait for the next one
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong expired = new AtomicLong();
+    private final Timer lag;
+
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    public TimerWheel(@Value("${game.timers.tick-ms:100}") long tickMillis,
+                      @Value("${game.timers.wheel-size:512}") int wheelSize,
+                      MeterRegistry meterRegistry) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new Bucket[Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1];
+        this.mask = buckets.length - 1;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+
+        Gauge.builder("game.timers.pending", pending, AtomicInteger::get)
+                .description("Timers waiting in the timer wheel")
+                .register(meterRegistry);
+        Gauge.builder("game.timers.expired", expired, AtomicLong::get)
+                .description("Timers that fired since startup")
+                .register(meterRegistry);
+        this.lag = Timer.builder("game.timers.lag")
+                .description("How late timers fire relative to their deadline")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        this.worker = new Thread(this::run, "game-timer-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    // Nanoseconds since the wheel started, the clock every Timeout deadline is measured on
+    long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private void run() {
+        while (running) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                continue;
+            }
+            removeCancelled();
+            transferScheduled();
+            buckets[(int) (tick & mask)].expire(now);
+            tick++;
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = now();
+            long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - now + 999_999);
+            if (sleepMillis <= 0) {
+                return now;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / buckets.length;
+            // Deadlines already in the past go into the current bucket and fire this tick
+            buckets[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // Owned by the wheel thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // Returns false when the timer already fired or was cancelled before
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire(long now) {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.expired.incrementAndGet();
+            wheel.lag.record(Math.max(0, now - deadline), TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Timer task failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    // Doubly linked list of timers, touched only by the wheel thread
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire(now);
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.game.alipetek.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process token buckets for single-node deployments. Each bucket holds up to one minute
+ * worth of requests and refills continuously. Buckets are spread over independently locked
+ * stripes so unrelated keys never contend on the same lock.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.backend", havingValue = "local", matchIfMissing = true)
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private static final int STRIPES = 64;
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public TokenBucketRateLimiter() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String key, int maxPerMinute) {
+        double capacity = Math.max(1, maxPerMinute);
+        double tokensPerNano = capacity / TimeUnit.MINUTES.toNanos(1);
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        long now = System.nanoTime();
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+            bucket.refill(now, capacity, tokensPerNano);
+            if (bucket.tokens < 1) {
+                return false;
+            }
+            bucket.tokens -= 1;
+            return true;
+        }
+    }
+
+    // A bucket idle long enough is full again, dropping it changes nothing
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        long cutoff = System.nanoTime() - IDLE_NANOS;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.buckets.values().removeIf(bucket -> bucket.lastRefillNanos < cutoff);
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<String, Bucket> buckets = new HashMap<>();
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        private Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefillNanos = now;
+        }
+
+        private void refill(long now, double capacity, double tokensPerNano) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
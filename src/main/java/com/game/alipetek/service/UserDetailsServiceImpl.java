@@ -1,15 +1,31 @@
 package com.game.alipetek.service;
 
+import com.game.alipetek.model.UserPrincipal;
 import com.game.alipetek.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves token-authenticated users (REST and STOMP) to a compact UserPrincipal, cached
+ * for a short TTL. Password login still goes through the full User in ApplicationConfiguration.
+ */
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final ConcurrentHashMap<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+
+    @Value("${security.principal.cache-ttl-ms:30000}")
+    private long cacheTtlMillis;
+
+    @Value("${security.principal.cache-size:10000}")
+    private int cacheSize;
 
     public UserDetailsServiceImpl(UserRepository userRepository) {
         this.userRepository = userRepository;
@@ -17,6 +33,44 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached = principals.get(username);
+        if (cached != null && cached.expiresAtMillis > now) {
+            return cached.principal;
+        }
+
+        UserPrincipal principal = userRepository.findPrincipalByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        if (principals.size() >= cacheSize) {
+            evict(now);
+        }
+        principals.put(username, new CachedPrincipal(principal, now + cacheTtlMillis));
+        return principal;
+    }
+
+    // Called whenever the user's profile or friends change
+    public void invalidate(String username) {
+        if (username != null) {
+            principals.remove(username);
+        }
+    }
+
+    private void evict(long now) {
+        principals.values().removeIf(entry -> entry.expiresAtMillis <= now);
+        Iterator<String> iterator = principals.keySet().iterator();
+        while (principals.size() >= cacheSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class CachedPrincipal {
+        private final UserPrincipal principal;
+        private final long expiresAtMillis;
+
+        private CachedPrincipal(UserPrincipal principal, long expiresAtMillis) {
+            this.principal = principal;
+            this.expiresAtMillis = expiresAtMillis;
+        }
     }
 }
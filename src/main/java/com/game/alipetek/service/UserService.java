@@ -1,9 +1,13 @@
 package com.game.alipetek.service;
 
 import com.game.alipetek.dto.CreateUserRequest;
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.dto.ScoreChange;
 import com.game.alipetek.model.Game;
 import com.game.alipetek.model.User;
 import com.game.alipetek.repository.UserRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
@@ -12,25 +16,28 @@ import java.util.List;
 @Service
 public class UserService {
 
+    public static final String PROFILE_QUEUE = "/queue/profile";
+
     private final UserRepository userRepository;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final LeaderboardService leaderboardService;
+    private final SimpMessagingTemplate simpMessagingTemplate;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserDetailsServiceImpl userDetailsService,
+                       LeaderboardService leaderboardService, SimpMessagingTemplate simpMessagingTemplate) {
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.leaderboardService = leaderboardService;
+        this.simpMessagingTemplate = simpMessagingTemplate;
     }
 
     // TODO: Add CRUD Operations
-    // TODO: Leaderboard, list users with highest scores
     // TODO: Leaderboard, list users with highest wins
 
     public User getUserByUsername(String username) {
         return userRepository.findByUsername(username).get();
     }
 
-    public void setDisconnectScore(User user) {
-        user.setScore(user.getScore() + 1000);
-        userRepository.save(user);
-    }
-
     public User createUser(CreateUserRequest createUserRequest) {
         if (createUserRequest == null) {
             // TODO: Exception Handling
@@ -50,6 +57,7 @@ public class UserService {
                 .build();
 
         userRepository.save(user);
+        leaderboardService.update(user);
         return user;
     }
 
@@ -64,6 +72,8 @@ public class UserService {
 
         userRepository.save(user);
         userRepository.save(friend);
+        userDetailsService.invalidate(user.getUsername());
+        userDetailsService.invalidate(friend.getUsername());
 
         return user;
     }
@@ -77,6 +87,8 @@ public class UserService {
 
         userRepository.save(user);
         userRepository.save(friend);
+        userDetailsService.invalidate(user.getUsername());
+        userDetailsService.invalidate(friend.getUsername());
 
         return user;
     }
@@ -85,6 +97,7 @@ public class UserService {
         User currentUser = userRepository.findByUsername(username).orElse(null);
         currentUser.setShareLocation(enabled);
         userRepository.save(currentUser);
+        userDetailsService.invalidate(username);
 
         return enabled;
     }
@@ -95,9 +108,24 @@ public class UserService {
 
     public void saveUser(User user) {
         userRepository.save(user);
+        userDetailsService.invalidate(user.getUsername());
+        leaderboardService.update(user);
+    }
+
+    public User updateAvatar(String username, String avatarUrl) {
+        User user = getUserByUsername(username);
+        user.setAvatarUrl(avatarUrl);
+        saveUser(user);
+        return user;
+    }
+
+    // Open profile views follow the player's score on /user/queue/profile
+    @EventListener
+    public void onScoreChange(ScoreChange scoreChange) {
+        simpMessagingTemplate.convertAndSendToUser(scoreChange.getUsername(), PROFILE_QUEUE, scoreChange);
     }
 
-    public List<User> getAllUsersOrderByScore() {
-        return userRepository.findAllUsersOrderByScore();
+    public List<LeaderboardEntry> getAllUsersOrderByScore(int page, int size) {
+        return leaderboardService.getPage(page, size);
     }
 }
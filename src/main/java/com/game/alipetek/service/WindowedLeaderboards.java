@@ -0,0 +1,338 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.dto.LeaderboardPeriodSummary;
+import com.game.alipetek.model.LeaderboardPeriod;
+import com.game.alipetek.model.LeaderboardWindowEnum;
+import com.game.alipetek.model.User;
+import com.game.alipetek.repository.LeaderboardDailyPointsRepository;
+import com.game.alipetek.repository.LeaderboardPeriodRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Daily, weekly and seasonal leaderboards of the points players earned in games during the
+ * current period. Each window only holds the running period, fed by game results as they
+ * happen. When the period ends its ranking is dropped for a fresh one and only a small
+ * summary is kept, so rollover costs the same no matter how many players there were.
+ * <p>
+ * Points are also kept per player and day in leaderboard_daily_points, written by ScoreUpdates
+ * in the same transaction as the score itself. At startup every window is rebuilt once from
+ * the days of its running period and its history from leaderboard_periods, so a restart
+ * loses no more than the score flush does. Summaries of finished periods are written by the
+ * rollover check, off the threads that record points; one whose period ended less than a
+ * check interval before a crash is lost. Days older than every running period are deleted.
+ */
+@Service
+@Slf4j
+public class WindowedLeaderboards {
+
+    private final Map<LeaderboardWindowEnum, Window> windows = new EnumMap<>(LeaderboardWindowEnum.class);
+    private final LeaderboardDailyPointsRepository dailyPointsRepository;
+    private final LeaderboardPeriodRepository periodRepository;
+    private final Queue<LeaderboardPeriodSummary> unsavedSummaries = new ConcurrentLinkedQueue<>();
+    private LocalDate prunedBefore;
+    private final ZoneId zone;
+    private final LocalDate seasonStart;
+    private final int seasonLengthDays;
+
+    @Value("${leaderboard.windows.max-players:100000}")
+    private int maxPlayers;
+
+    @Value("${leaderboard.windows.history-size:8}")
+    private int historySize;
+
+    @Value("${leaderboard.windows.summary-top-size:10}")
+    private int summaryTopSize;
+
+    @Value("${leaderboard.max-page-size:100}")
+    private int maxPageSize;
+
+    public WindowedLeaderboards(MeterRegistry meterRegistry,
+                                LeaderboardDailyPointsRepository dailyPointsRepository,
+                                LeaderboardPeriodRepository periodRepository,
+                                @Value("${leaderboard.windows.zone:UTC}") String zone,
+                                @Value("${leaderboard.windows.season-start:2025-01-01}") String seasonStart,
+                                @Value("${leaderboard.windows.season-length-days:90}") int seasonLengthDays) {
+        this.dailyPointsRepository = dailyPointsRepository;
+        this.periodRepository = periodRepository;
+        this.zone = ZoneId.of(zone);
+        this.seasonStart = LocalDate.parse(seasonStart);
+        this.seasonLengthDays = Math.max(1, seasonLengthDays);
+
+        LocalDate today = LocalDate.now(this.zone);
+        for (LeaderboardWindowEnum type : LeaderboardWindowEnum.values()) {
+            Window window = new Window(type, periodStart(type, today), meterRegistry);
+            windows.put(type, window);
+
+            Gauge.builder("leaderboard.window.players", window, Window::players)
+                    .tag("window", type.name())
+                    .description("Players ranked in the current period")
+                    .register(meterRegistry);
+        }
+    }
+
+    // A full scan of each running period, once, before any game can record points
+    @PostConstruct
+    public void restore() {
+        LocalDate today = LocalDate.now(zone);
+        for (Window window : windows.values()) {
+            synchronized (window) {
+                window.rollIfDue(today);
+                LocalDate start = window.periodStart;
+                window.restore(dailyPointsRepository.sumByPlayer(start, periodEnd(window.type, start)),
+                        periodRepository.findByWindowOrderByPeriodStartDesc(window.type, PageRequest.of(0, historySize)));
+            }
+            log.info("Restored {} leaderboard with {} players", window.type, window.players());
+        }
+    }
+
+    /**
+     * Adds the answer points a player earned in a finished game to every window, awards are not
+     * ranked here. Returns the day the points count for, so the caller can persist them with
+     * the score, or null when nothing was recorded.
+     */
+    public LocalDate record(User user, int points) {
+        if (user == null || user.getId() == null || points <= 0) {
+            return null;
+        }
+        LocalDate today = LocalDate.now(zone);
+        for (Window window : windows.values()) {
+            window.add(today, user, points);
+        }
+        return today;
+    }
+
+    public List<LeaderboardEntry> getPage(LeaderboardWindowEnum type, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        long fromRank = (long) Math.max(0, page) * pageSize + 1;
+        if (fromRank > Integer.MAX_VALUE) {
+            return List.of();
+        }
+        Window window = windows.get(type);
+        synchronized (window) {
+            window.rollIfDue(LocalDate.now(zone));
+            return window.index.range((int) fromRank, pageSize);
+        }
+    }
+
+    public Optional<LeaderboardEntry> getRank(LeaderboardWindowEnum type, Long userId) {
+        Window window = windows.get(type);
+        synchronized (window) {
+            window.rollIfDue(LocalDate.now(zone));
+            return Optional.ofNullable(window.index.find(userId));
+        }
+    }
+
+    public List<LeaderboardEntry> getAround(LeaderboardWindowEnum type, Long userId, int radius) {
+        Window window = windows.get(type);
+        synchronized (window) {
+            window.rollIfDue(LocalDate.now(zone));
+            return window.index.around(userId, Math.max(0, Math.min(radius, maxPageSize / 2)));
+        }
+    }
+
+    // Summaries of the most recent finished periods, newest first
+    public List<LeaderboardPeriodSummary> getHistory(LeaderboardWindowEnum type) {
+        Window window = windows.get(type);
+        synchronized (window) {
+            window.rollIfDue(LocalDate.now(zone));
+            return new ArrayList<>(window.history);
+        }
+    }
+
+    // Rolls idle windows over too, so their gauges and history do not wait for the next game
+    @Scheduled(fixedDelayString = "${leaderboard.windows.rollover-check-ms:60000}")
+    public void rollOver() {
+        LocalDate today = LocalDate.now(zone);
+        LocalDate oldestStart = today;
+        for (Window window : windows.values()) {
+            synchronized (window) {
+                window.rollIfDue(today);
+                if (window.periodStart.isBefore(oldestStart)) {
+                    oldestStart = window.periodStart;
+                }
+            }
+        }
+        saveSummaries();
+        pruneDaysBefore(oldestStart);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveSummaries();
+    }
+
+    private void saveSummaries() {
+        LeaderboardPeriodSummary summary;
+        while ((summary = unsavedSummaries.peek()) != null) {
+            try {
+                // Another instance may have rolled the same period over first
+                if (!periodRepository.existsByWindowAndPeriodStart(summary.getWindow(), summary.getPeriodStart())) {
+                    periodRepository.save(toPeriod(summary));
+                }
+            } catch (DataAccessException e) {
+                log.error("Could not save the {} leaderboard summary of {}, retrying on the next check: {}",
+                        summary.getWindow(), summary.getPeriodStart(), e.getMessage());
+                return;
+            }
+            unsavedSummaries.poll();
+        }
+    }
+
+    private void pruneDaysBefore(LocalDate day) {
+        if (day.equals(prunedBefore)) {
+            return;
+        }
+        try {
+            int deleted = dailyPointsRepository.deleteBefore(day);
+            prunedBefore = day;
+            log.debug("Deleted {} leaderboard day rows before {}", deleted, day);
+        } catch (DataAccessException e) {
+            log.error("Could not delete leaderboard days before {}: {}", day, e.getMessage());
+        }
+    }
+
+    private static LeaderboardPeriod toPeriod(LeaderboardPeriodSummary summary) {
+        return LeaderboardPeriod.builder()
+                .window(summary.getWindow())
+                .periodStart(summary.getPeriodStart())
+                .periodEnd(summary.getPeriodEnd())
+                .players(summary.getPlayers())
+                .totalPoints(summary.getTotalPoints())
+                .top(summary.getTop())
+                .build();
+    }
+
+    private static LeaderboardPeriodSummary toSummary(LeaderboardPeriod period) {
+        return LeaderboardPeriodSummary.builder()
+                .window(period.getWindow())
+                .periodStart(period.getPeriodStart())
+                .periodEnd(period.getPeriodEnd())
+                .players(period.getPlayers())
+                .totalPoints(period.getTotalPoints())
+                .top(period.getTop() != null ? period.getTop() : List.of())
+                .build();
+    }
+
+    private LocalDate periodStart(LeaderboardWindowEnum type, LocalDate day) {
+        return switch (type) {
+            case DAILY -> day;
+            case WEEKLY -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case SEASON -> seasonStart.plusDays(
+                    Math.floorDiv(ChronoUnit.DAYS.between(seasonStart, day), seasonLengthDays) * seasonLengthDays);
+        };
+    }
+
+    private LocalDate periodEnd(LeaderboardWindowEnum type, LocalDate start) {
+        return switch (type) {
+            case DAILY -> start.plusDays(1);
+            case WEEKLY -> start.plusWeeks(1);
+            case SEASON -> start.plusDays(seasonLengthDays);
+        };
+    }
+
+    private final class Window {
+        private final LeaderboardWindowEnum type;
+        private final Deque<LeaderboardPeriodSummary> history = new ArrayDeque<>();
+        private final Counter evicted;
+
+        private LocalDate periodStart;
+        private LeaderboardIndex index = new LeaderboardIndex();
+        private long totalPoints;
+
+        private Window(LeaderboardWindowEnum type, LocalDate periodStart, MeterRegistry meterRegistry) {
+            this.type = type;
+            this.periodStart = periodStart;
+            this.evicted = Counter.builder("leaderboard.window.evicted")
+                    .tag("window", type.name())
+                    .description("Lowest ranked players dropped to keep the window within max-players")
+                    .register(meterRegistry);
+        }
+
+        private synchronized void add(LocalDate today, User user, int points) {
+            rollIfDue(today);
+
+            Integer current = index.scoreOf(user.getId());
+            long score = (current != null ? current : 0L) + points;
+            index.update(user.getId(), user.getUsername(), user.getAvatarUrl(), (int) Math.min(score, Integer.MAX_VALUE));
+            totalPoints += points;
+
+            if (index.size() > maxPlayers) {
+                index.removeLast();
+                evicted.increment();
+            }
+        }
+
+        private void restore(List<LeaderboardEntry> entries, List<LeaderboardPeriod> periods) {
+            index = new LeaderboardIndex();
+            totalPoints = 0;
+            for (LeaderboardEntry entry : entries) {
+                index.update(entry.getId(), entry.getUsername(), entry.getAvatarUrl(), entry.getScore());
+                totalPoints += entry.getScore();
+            }
+            while (index.size() > maxPlayers) {
+                index.removeLast();
+            }
+
+            history.clear();
+            for (LeaderboardPeriod period : periods) {
+                history.addLast(toSummary(period));
+            }
+        }
+
+        private void rollIfDue(LocalDate today) {
+            LocalDate start = periodStart(type, today);
+            if (start.equals(periodStart)) {
+                return;
+            }
+            if (index.size() > 0) {
+                LeaderboardPeriodSummary summary = LeaderboardPeriodSummary.builder()
+                        .window(type)
+                        .periodStart(periodStart)
+                        .periodEnd(periodEnd(type, periodStart))
+                        .players(index.size())
+                        .totalPoints(totalPoints)
+                        .top(index.range(1, summaryTopSize))
+                        .build();
+                history.addFirst(summary);
+                // Written by the next rollover check, this can run on a game's thread
+                unsavedSummaries.add(summary);
+                while (history.size() > historySize) {
+                    history.removeLast();
+                }
+            }
+            periodStart = start;
+            index = new LeaderboardIndex();
+            totalPoints = 0;
+        }
+
+        private synchronized int players() {
+            return index.size();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.GameStatusEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wrong-guess counters of live games as plain atomics. A guess only increments a counter;
+ * every broadcast tick sends one update per game that changed since the last tick to
+ * /topic/wrong-guesses/{gameId} and copies the counts onto the Game, which is then
+ * persisted with the rest of its state by the session registry.
+ */
+@Component
+public class WrongGuessCounters {
+
+    public static final String FIRST_USER = "firstUser";
+    public static final String SECOND_USER = "secondUser";
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final GameSessionRegistry gameSessionRegistry;
+    private final GameMoveExecutor gameMoveExecutor;
+
+    private final ConcurrentHashMap<Long, Counts> counts = new ConcurrentHashMap<>();
+    private final Set<Long> changedGames = ConcurrentHashMap.newKeySet();
+
+    private final Counter guesses;
+    private final Counter broadcasts;
+
+    public WrongGuessCounters(SimpMessagingTemplate simpMessagingTemplate, GameSessionRegistry gameSessionRegistry,
+                              GameMoveExecutor gameMoveExecutor, MeterRegistry meterRegistry) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.gameSessionRegistry = gameSessionRegistry;
+        this.gameMoveExecutor = gameMoveExecutor;
+        this.guesses = Counter.builder("game.wrong.guesses").register(meterRegistry);
+        this.broadcasts = Counter.builder("game.wrong.guesses.broadcasts")
+                .description("Coalesced wrong-guess updates sent to game topics")
+                .register(meterRegistry);
+    }
+
+    public void increment(Game game, String player) {
+        if (!FIRST_USER.equals(player) && !SECOND_USER.equals(player)) {
+            return;
+        }
+
+        Counts gameCounts = counts.computeIfAbsent(game.getId(), id -> Counts.of(game));
+        (FIRST_USER.equals(player) ? gameCounts.firstUser : gameCounts.secondUser).incrementAndGet();
+        changedGames.add(game.getId());
+        guesses.increment();
+    }
+
+    // Called from the game's move mailbox when the letter changes
+    public void reset(Long gameId) {
+        Counts gameCounts = counts.get(gameId);
+        if (gameCounts != null) {
+            gameCounts.firstUser.set(0);
+            gameCounts.secondUser.set(0);
+            changedGames.add(gameId);
+        }
+    }
+
+    public void remove(Long gameId) {
+        counts.remove(gameId);
+        changedGames.remove(gameId);
+    }
+
+    @Scheduled(fixedRateString = "${game.wrong-guesses.broadcast-interval-ms:200}")
+    public void broadcastChanges() {
+        Iterator<Long> iterator = changedGames.iterator();
+        while (iterator.hasNext()) {
+            Long gameId = iterator.next();
+            iterator.remove();
+
+            Counts gameCounts = counts.get(gameId);
+            Game game = gameSessionRegistry.find(gameId).orElse(null);
+            if (gameCounts == null || game == null || game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
+                counts.remove(gameId);
+                continue;
+            }
+
+            simpMessagingTemplate.convertAndSend("/topic/wrong-guesses/" + gameId, gameCounts.toMap());
+            broadcasts.increment();
+
+            // Read again in the mailbox so a reset made by a move in between is not overwritten
+            gameMoveExecutor.submit(gameId, () -> {
+                game.setFirstUserWrongGuesses(gameCounts.firstUser.get());
+                game.setSecondUserWrongGuesses(gameCounts.secondUser.get());
+                gameSessionRegistry.markDirty(game);
+            });
+        }
+    }
+
+    private static final class Counts {
+        private final AtomicInteger firstUser;
+        private final AtomicInteger secondUser;
+
+        private Counts(int firstUser, int secondUser) {
+            this.firstUser = new AtomicInteger(firstUser);
+            this.secondUser = new AtomicInteger(secondUser);
+        }
+
+        private static Counts of(Game game) {
+            Map<String, Integer> wrongGuesses = game.getWrongGuesses();
+            return new Counts(wrongGuesses.get(FIRST_USER), wrongGuesses.get(SECOND_USER));
+        }
+
+        private Map<String, Integer> toMap() {
+            return Map.of(FIRST_USER, firstUser.get(), SECOND_USER, secondUser.get());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.game.alipetek.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.game.alipetek.dto.GamePlay;
+import com.game.alipetek.dto.GameStateEvent;
+import com.game.alipetek.dto.JoinFriendsGameRequest;
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.GameStatusEnum;
+import com.game.alipetek.repository.UserRepository;
+import com.game.alipetek.service.GameService;
+import com.game.alipetek.service.JwtService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * End to end latency from a player submitting a correct answer to the resulting state event
+ * arriving on /topic/game-state/{id}, for the REST endpoint against the STOMP message mapping.
+ * Boots the whole application on an in-memory H2 database with a question for every letter and
+ * difficulty, and keeps one STOMP session subscribed to the game, like a player's browser.
+ * Every answer moves the game to the next letter, a finished game is replaced outside the
+ * measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnswerBroadcastBenchmark {
+
+    private static final long EVENT_TIMEOUT_SECONDS = 5;
+
+    private ConfigurableApplicationContext context;
+    private GameService gameService;
+    private SimpUserRegistry userRegistry;
+    private ObjectMapper objectMapper;
+    private HttpClient httpClient;
+    private WebSocketStompClient stompClient;
+    private StompSession stompSession;
+    private URI gameplayUri;
+
+    private String firstPlayer;
+    private String secondPlayer;
+    private String token;
+
+    private final BlockingQueue<GameStateEvent> events = new LinkedBlockingQueue<>();
+    private StompSession.Subscription subscription;
+    private volatile Long gameId;
+    private int sessions;
+
+    private String answer;
+    private long expectedSeq;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApplication.start();
+        gameService = context.getBean(GameService.class);
+        userRegistry = context.getBean(SimpUserRegistry.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+        firstPlayer = BenchmarkApplication.seedUser(context, "bench1").getUsername();
+        secondPlayer = BenchmarkApplication.seedUser(context, "bench2").getUsername();
+        token = context.getBean(JwtService.class).generateToken(context.getBean(UserRepository.class)
+                .findByUsername(firstPlayer).orElseThrow());
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        gameplayUri = URI.create("http://localhost:" + port + "/api/game/gameplay");
+
+        stompClient = new WebSocketStompClient(new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        stompSession = stompClient.connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {
+                }).get(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (stompSession != null) {
+            stompSession.disconnect();
+        }
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    // Not measured: starts a fresh game once the current one is over, and looks up the answer
+    @Setup(Level.Invocation)
+    public void nextQuestion() throws Exception {
+        Game game = gameId != null ? gameService.findLiveGame(gameId) : null;
+        if (game == null || game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
+            game = startGame();
+        }
+        answer = game.getCurrentQuestion().getAnswer();
+        expectedSeq = game.getStateVersion() + 1;
+    }
+
+    @Benchmark
+    public GameStateEvent rest() throws Exception {
+        GamePlay gamePlay = gamePlay();
+        HttpRequest request = HttpRequest.newBuilder(gameplayUri)
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(gamePlay)))
+                .build();
+        CompletableFuture<HttpResponse<Void>> response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+
+        GameStateEvent event = awaitEvent();
+        if (response.get(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS).statusCode() != 200) {
+            throw new IllegalStateException("Answer was rejected with " + response.get().statusCode());
+        }
+        return event;
+    }
+
+    @Benchmark
+    public GameStateEvent stomp() throws Exception {
+        GamePlay gamePlay = gamePlay();
+        stompSession.send("/app/answer/" + gameId, gamePlay);
+        return awaitEvent();
+    }
+
+    private GamePlay gamePlay() {
+        GamePlay gamePlay = new GamePlay();
+        gamePlay.setGameId(gameId);
+        gamePlay.setUserAnswer(answer);
+        return gamePlay;
+    }
+
+    private GameStateEvent awaitEvent() throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EVENT_TIMEOUT_SECONDS);
+        while (true) {
+            GameStateEvent event = events.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (event == null) {
+                throw new TimeoutException("No state event " + expectedSeq + " for game " + gameId);
+            }
+            if (event.getSeq() >= expectedSeq) {
+                return event;
+            }
+        }
+    }
+
+    private Game startGame() throws Exception {
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+        events.clear();
+
+        Game created = gameService.createGame(firstPlayer, "bench-" + ++sessions);
+        gameId = created.getId();
+        String destination = "/topic/game-state/" + gameId;
+        subscription = stompSession.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return GameStateEvent.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                GameStateEvent event = (GameStateEvent) payload;
+                if (event.getGameId().equals(gameId)) {
+                    events.add(event);
+                }
+            }
+        });
+        awaitSubscription(destination);
+
+        JoinFriendsGameRequest join = new JoinFriendsGameRequest();
+        join.setUsername(secondPlayer);
+        join.setGameId(String.valueOf(gameId));
+        join.setSessionId("bench-" + ++sessions);
+        return gameService.connectToFriendsGame(join);
+    }
+
+    // The simple broker sends no receipts, so wait for the server to have seen the SUBSCRIBE instead
+    private void awaitSubscription(String destination) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EVENT_TIMEOUT_SECONDS);
+        while (userRegistry.findSubscriptions(subscription -> destination.equals(subscription.getDestination())).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("Subscription to " + destination + " never arrived");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
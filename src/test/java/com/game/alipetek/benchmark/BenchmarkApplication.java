@@ -0,0 +1,82 @@
+package com.game.alipetek.benchmark;
+
+import com.game.alipetek.AlipetekApplication;
+import com.game.alipetek.model.Question;
+import com.game.alipetek.model.QuestionDifficultyEnum;
+import com.game.alipetek.model.User;
+import com.game.alipetek.repository.QuestionRepository;
+import com.game.alipetek.repository.UserRepository;
+import com.game.alipetek.service.QuestionService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Boots the whole application for the end to end benchmarks, on a random port and an
+ * in-memory H2 database, and seeds what a game needs: a question for every letter and
+ * difficulty, and players that can log in.
+ */
+final class BenchmarkApplication {
+
+    private static final String[] PROPERTIES = {
+            "--server.port=0",
+            "--spring.datasource.url=jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--spring.jpa.show-sql=false",
+            "--security.jwt.secret-key=MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=",
+            "--spring.security.oauth2.client.registration.google.client-id=bench",
+            "--spring.mail.username=bench",
+            "--spring.mail.password=bench",
+            "--rate-limit.enabled=false",
+            // The bench answers as fast as it can, no letter should time out underneath it
+            "--game.question.time-limit-ms=0",
+            // application.properties turns web and security logging up to DEBUG, which would dominate every request
+            "--logging.level.root=WARN",
+            "--logging.level.org.springframework.web=WARN",
+            "--logging.level.org.springframework.security=WARN",
+    };
+
+    private BenchmarkApplication() {
+    }
+
+    // Command line arguments, defaults passed to the builder would lose to application.properties
+    static ConfigurableApplicationContext start(String... properties) {
+        String[] args = Stream.concat(Stream.of(PROPERTIES), Stream.of(properties)).toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AlipetekApplication.class).run(args);
+        seedQuestions(context);
+        return context;
+    }
+
+    static User seedUser(ConfigurableApplicationContext context, String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@bench.local");
+        user.setPassword("{noop}" + username);
+        user.setEnabled(true);
+        return context.getBean(UserRepository.class).save(user);
+    }
+
+    private static void seedQuestions(ConfigurableApplicationContext context) {
+        List<Question> questions = new ArrayList<>();
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            for (QuestionDifficultyEnum difficulty : QuestionDifficultyEnum.values()) {
+                questions.add(Question.builder()
+                        .text("Bench question " + letter + difficulty.getDifficulty())
+                        .answer("answer" + letter + difficulty.getDifficulty())
+                        .letter(letter)
+                        .questionDifficultyEnum(difficulty)
+                        .points(difficulty.getDifficulty() * 100)
+                        .build());
+            }
+        }
+        context.getBean(QuestionRepository.class).saveAll(questions);
+        context.getBean(QuestionService.class).buildQuestionIndex();
+    }
+}
@@ -0,0 +1,104 @@
+package com.game.alipetek.benchmark;
+
+import com.game.alipetek.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request with a bearer token, for a pool of users that keep
+ * sending requests with their own token.
+ * <ul>
+ *     <li>threeParses: the filter before the change, extractUsername then isTokenValid, each
+ *     claim read decoding the key and building a new parser</li>
+ *     <li>singleParse: one parse with the parser built at startup, the cache turned off</li>
+ *     <li>cachedVerify: JwtService.verifyToken as it runs now, every token already verified once</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = Base64.getEncoder()
+            .encodeToString("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+    private static final int TOKENS = 1024;
+
+    private JwtService jwtService;
+    private JwtParser jwtParser;
+    private String[] tokens;
+    private UserDetails[] users;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtService, "cacheSize", 10_000);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        jwtParser = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET))).build();
+
+        tokens = new String[TOKENS];
+        users = new UserDetails[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            users[i] = User.withUsername("player" + i).password("").authorities("USER").build();
+            tokens[i] = jwtService.generateToken(users[i]);
+            jwtService.verifyToken(tokens[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean threeParses() {
+        int i = nextIndex();
+        String token = tokens[i];
+        String username = parseWithNewParser(token).getSubject();
+        return username.equals(users[i].getUsername())
+                && parseWithNewParser(token).getSubject().equals(users[i].getUsername())
+                && !parseWithNewParser(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean singleParse() {
+        int i = nextIndex();
+        Claims claims = jwtParser.parseClaimsJws(tokens[i]).getBody();
+        return claims.getSubject().equals(users[i].getUsername()) && !claims.getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean cachedVerify() {
+        int i = nextIndex();
+        Claims claims = jwtService.verifyToken(tokens[i]);
+        return claims.getSubject().equals(users[i].getUsername());
+    }
+
+    private static Claims parseWithNewParser(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (TOKENS - 1);
+        return next;
+    }
+}
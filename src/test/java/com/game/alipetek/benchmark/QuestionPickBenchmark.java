@@ -0,0 +1,91 @@
+package com.game.alipetek.benchmark;
+
+import com.game.alipetek.model.GameQuestionTable;
+import com.game.alipetek.model.Question;
+import com.game.alipetek.model.QuestionDifficultyEnum;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Picking the next question of a game: the old stream filter over the deck against the
+ * per-game (letter, difficulty) table. The deck has one question per slot, like a real game,
+ * and questionsPerSlot grows it for banks that keep several candidates per slot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionPickBenchmark {
+
+    private static final QuestionDifficultyEnum[] DIFFICULTIES = QuestionDifficultyEnum.values();
+
+    @Param({"1", "4"})
+    private int questionsPerSlot;
+
+    private List<Question> deck;
+    private GameQuestionTable table;
+    private String[] letters;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        deck = new ArrayList<>();
+        long id = 1;
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            for (QuestionDifficultyEnum difficulty : DIFFICULTIES) {
+                for (int i = 0; i < questionsPerSlot; i++) {
+                    deck.add(Question.builder()
+                            .id(id++)
+                            .text("Question " + id)
+                            .answer("answer" + id)
+                            .letter(letter)
+                            .questionDifficultyEnum(difficulty)
+                            .points(difficulty.getDifficulty() * 100)
+                            .build());
+                }
+            }
+        }
+        table = GameQuestionTable.of(deck);
+
+        // Game.currentLetter is a String, the old lookup compared against it for every question
+        Random random = new Random(42);
+        letters = new String[1024];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = String.valueOf((char) ('A' + random.nextInt(26)));
+        }
+    }
+
+    @Benchmark
+    public Question streamFilter() {
+        String letter = nextLetter();
+        QuestionDifficultyEnum difficulty = DIFFICULTIES[next % DIFFICULTIES.length];
+        List<Question> candidates = deck.stream()
+                .filter(q -> q.getLetter().toString().equalsIgnoreCase(letter)
+                        && q.getQuestionDifficultyEnum() == difficulty)
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+    }
+
+    @Benchmark
+    public Question table() {
+        String letter = nextLetter();
+        QuestionDifficultyEnum difficulty = DIFFICULTIES[next % DIFFICULTIES.length];
+        return table.pick(letter.charAt(0), difficulty);
+    }
+
+    private String nextLetter() {
+        next = (next + 1) & (letters.length - 1);
+        return letters[next];
+    }
+}
@@ -0,0 +1,256 @@
+package com.game.alipetek.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.game.alipetek.dto.GamePlay;
+import com.game.alipetek.dto.GameStateEvent;
+import com.game.alipetek.dto.JoinFriendsGameRequest;
+import com.game.alipetek.model.Game;
+import com.game.alipetek.model.GameStatusEnum;
+import com.game.alipetek.model.User;
+import com.game.alipetek.service.GameService;
+import com.game.alipetek.service.JwtService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load run against the booted application with spring.threads.virtual.enabled off and on.
+ * Every JMH thread is a player with its own login, STOMP session and game, and keeps one
+ * request in flight at a time:
+ * <ul>
+ *     <li>profile: GET /api/profile, a database read behind the JWT filter's own lookup</li>
+ *     <li>answerRest: a correct answer POSTed to /api/game/gameplay, until the response arrives</li>
+ *     <li>answerStomp: a correct answer sent to /app/answer/{id}, until its state event arrives
+ *     on /topic/game-state/{id}</li>
+ * </ul>
+ * Throughput and the sampled percentiles are both reported. Run more players than Tomcat has
+ * threads (server.tomcat.threads.max, 200) with -t to see the platform pool queue.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(64)
+@Fork(1)
+public class RequestThreadingBenchmark {
+
+    private static final long EVENT_TIMEOUT_SECONDS = 10;
+
+    @State(Scope.Benchmark)
+    public static class App {
+
+        @Param({"false", "true"})
+        private boolean virtualThreads;
+
+        private ConfigurableApplicationContext context;
+        private GameService gameService;
+        private JwtService jwtService;
+        private SimpUserRegistry userRegistry;
+        private ObjectMapper objectMapper;
+        private HttpClient httpClient;
+        private WebSocketStompClient stompClient;
+        private int port;
+        private final AtomicInteger players = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkApplication.start("--spring.threads.virtual.enabled=" + virtualThreads);
+            gameService = context.getBean(GameService.class);
+            jwtService = context.getBean(JwtService.class);
+            userRegistry = context.getBean(SimpUserRegistry.class);
+            objectMapper = context.getBean(ObjectMapper.class);
+            port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+            httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            stompClient = new WebSocketStompClient(new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+            stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (stompClient != null) {
+                stompClient.stop();
+            }
+            if (context != null) {
+                context.close();
+            }
+        }
+
+        private URI uri(String path) {
+            return URI.create("http://localhost:" + port + path);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Player {
+
+        private App app;
+        private String username;
+        private String opponent;
+        private String token;
+        private StompSession stompSession;
+
+        private final BlockingQueue<GameStateEvent> events = new LinkedBlockingQueue<>();
+        private StompSession.Subscription subscription;
+        private volatile Long gameId;
+        private int sessions;
+
+        private String answer;
+        private long expectedSeq;
+
+        @Setup(Level.Trial)
+        public void connect(App app) throws Exception {
+            this.app = app;
+            int player = app.players.incrementAndGet();
+            User user = BenchmarkApplication.seedUser(app.context, "player" + player);
+            username = user.getUsername();
+            opponent = BenchmarkApplication.seedUser(app.context, "opponent" + player).getUsername();
+            token = app.jwtService.generateToken(user);
+
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + token);
+            stompSession = app.stompClient.connectAsync("ws://localhost:" + app.port + "/ws", new WebSocketHttpHeaders(),
+                    connectHeaders, new StompSessionHandlerAdapter() {
+                    }).get(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        // JMH may close the application first, which already ends the session
+        @TearDown(Level.Trial)
+        public void disconnect() {
+            if (stompSession != null && stompSession.isConnected()) {
+                stompSession.disconnect();
+            }
+        }
+
+        // Not measured: starts a fresh game once the current one is over, and looks up the answer
+        @Setup(Level.Invocation)
+        public void nextQuestion() throws Exception {
+            Game game = gameId != null ? app.gameService.findLiveGame(gameId) : null;
+            if (game == null || game.getGameStatusEnum() == GameStatusEnum.FINISHED) {
+                game = startGame();
+            }
+            answer = game.getCurrentQuestion().getAnswer();
+            expectedSeq = game.getStateVersion() + 1;
+            // Events of answers sent over REST are not awaited
+            events.clear();
+        }
+
+        private GamePlay gamePlay() {
+            GamePlay gamePlay = new GamePlay();
+            gamePlay.setGameId(gameId);
+            gamePlay.setUserAnswer(answer);
+            return gamePlay;
+        }
+
+        private GameStateEvent awaitEvent() throws InterruptedException, TimeoutException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EVENT_TIMEOUT_SECONDS);
+            while (true) {
+                GameStateEvent event = events.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (event == null) {
+                    throw new TimeoutException("No state event " + expectedSeq + " for game " + gameId);
+                }
+                if (event.getSeq() >= expectedSeq) {
+                    return event;
+                }
+            }
+        }
+
+        private Game startGame() throws Exception {
+            if (subscription != null) {
+                subscription.unsubscribe();
+            }
+            events.clear();
+
+            Game created = app.gameService.createGame(username, username + "-" + ++sessions);
+            gameId = created.getId();
+            String destination = "/topic/game-state/" + gameId;
+            subscription = stompSession.subscribe(destination, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return GameStateEvent.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    GameStateEvent event = (GameStateEvent) payload;
+                    if (event.getGameId().equals(gameId)) {
+                        events.add(event);
+                    }
+                }
+            });
+            awaitSubscription(destination);
+
+            JoinFriendsGameRequest join = new JoinFriendsGameRequest();
+            join.setUsername(opponent);
+            join.setGameId(String.valueOf(gameId));
+            join.setSessionId(opponent + "-" + ++sessions);
+            return app.gameService.connectToFriendsGame(join);
+        }
+
+        // The simple broker sends no receipts, so wait for the server to have seen the SUBSCRIBE instead
+        private void awaitSubscription(String destination) throws InterruptedException, TimeoutException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EVENT_TIMEOUT_SECONDS);
+            while (app.userRegistry.findSubscriptions(s -> destination.equals(s.getDestination())).isEmpty()) {
+                if (System.nanoTime() > deadline) {
+                    throw new TimeoutException("Subscription to " + destination + " never arrived");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Benchmark
+    public int profile(App app, Player player) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(app.uri("/api/profile"))
+                .header("Authorization", "Bearer " + player.token)
+                .GET()
+                .build();
+        return checked(app.httpClient.send(request, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    @Benchmark
+    public int answerRest(App app, Player player) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(app.uri("/api/game/gameplay"))
+                .header("Authorization", "Bearer " + player.token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(app.objectMapper.writeValueAsBytes(player.gamePlay())))
+                .build();
+        return checked(app.httpClient.send(request, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    @Benchmark
+    public GameStateEvent answerStomp(Player player) throws Exception {
+        player.stompSession.send("/app/answer/" + player.gameId, player.gamePlay());
+        return player.awaitEvent();
+    }
+
+    private static int checked(HttpResponse<?> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(response.request().uri().getPath() + " answered " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
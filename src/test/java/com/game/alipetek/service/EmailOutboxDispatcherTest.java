@@ -0,0 +1,195 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.model.EmailOutbox;
+import com.game.alipetek.model.EmailStatusEnum;
+import com.game.alipetek.repository.EmailOutboxRepository;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailOutboxDispatcherTest {
+
+    private static final long BASE_DELAY_MS = 5000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final List<EmailOutbox> outbox = new ArrayList<>();
+
+    private GreenMail greenMail;
+    private JavaMailSenderImpl mailSender;
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+        greenMail.start();
+
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new EmailOutboxDispatcher(inMemoryRepository(), mailSender, mock(PlatformTransactionManager.class),
+                mock(BlockingTaskScheduler.class), meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseDelayMillis", BASE_DELAY_MS);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxDelayMillis", 3_600_000L);
+        ReflectionTestUtils.setField(dispatcher, "claimLeaseMillis", 300_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        greenMail.stop();
+    }
+
+    @Test
+    void sendsDueMailsInOneBatch() throws Exception {
+        EmailOutbox welcome = queue("alice@example.com", "Welcome");
+        EmailOutbox reset = queue("bob@example.com", "Reset your password");
+
+        dispatcher.dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).extracting(MimeMessage::getSubject).containsExactlyInAnyOrder("Welcome", "Reset your password");
+        assertThat(welcome.getStatus()).isEqualTo(EmailStatusEnum.SENT);
+        assertThat(reset.getStatus()).isEqualTo(EmailStatusEnum.SENT);
+        assertThat(welcome.getSentDate()).isNotNull();
+        assertThat(meterRegistry.counter("mail.outbox.sent").count()).isEqualTo(2);
+    }
+
+    @Test
+    void retriesWithExponentialBackoffWhileSmtpIsDown() throws IOException {
+        EmailOutbox email = queue("alice@example.com", "Welcome");
+        mailSender.setPort(closedPort());
+
+        dispatcher.dispatch();
+
+        assertThat(email.getStatus()).isEqualTo(EmailStatusEnum.PENDING);
+        assertThat(email.getAttempts()).isEqualTo(1);
+        assertThat(email.getLastError()).isNotBlank();
+        assertThat(delayUntilNextAttempt(email)).isCloseTo(BASE_DELAY_MS, within(1000L));
+
+        // Not due yet, so a dispatch right away leaves it alone
+        dispatcher.dispatch();
+        assertThat(email.getAttempts()).isEqualTo(1);
+
+        makeDue(email);
+        dispatcher.dispatch();
+        assertThat(email.getAttempts()).isEqualTo(2);
+        assertThat(delayUntilNextAttempt(email)).isCloseTo(2 * BASE_DELAY_MS, within(1000L));
+
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        makeDue(email);
+        dispatcher.dispatch();
+
+        assertThat(email.getStatus()).isEqualTo(EmailStatusEnum.SENT);
+        assertThat(email.getLastError()).isNull();
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+    }
+
+    @Test
+    void givesUpAfterTheLastAttempt() throws IOException {
+        EmailOutbox email = queue("alice@example.com", "Welcome");
+        mailSender.setPort(closedPort());
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            makeDue(email);
+            dispatcher.dispatch();
+        }
+
+        assertThat(email.getStatus()).isEqualTo(EmailStatusEnum.FAILED);
+        assertThat(email.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(meterRegistry.counter("mail.outbox.failed").count()).isEqualTo(1);
+
+        // A failed mail is never picked up again
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        makeDue(email);
+        dispatcher.dispatch();
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+    }
+
+    @Test
+    void claimedMailStaysInvisibleForTheLease() {
+        EmailOutbox email = queue("alice@example.com", "Welcome");
+        // Claimed by another dispatcher that has not written its result yet
+        email.setNextAttemptAt(LocalDateTime.now().plusMinutes(5));
+
+        dispatcher.dispatch();
+
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+        assertThat(email.getAttempts()).isZero();
+    }
+
+    private EmailOutbox queue(String recipient, String subject) {
+        EmailOutbox email = EmailOutbox.builder()
+                .id((long) outbox.size() + 1)
+                .recipient(recipient)
+                .subject(subject)
+                .body("<p>" + subject + "</p>")
+                .status(EmailStatusEnum.PENDING)
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+                .createdDate(LocalDateTime.now())
+                .build();
+        outbox.add(email);
+        return email;
+    }
+
+    private static void makeDue(EmailOutbox email) {
+        email.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+    }
+
+    private static long delayUntilNextAttempt(EmailOutbox email) {
+        return Duration.between(LocalDateTime.now(), email.getNextAttemptAt()).toMillis();
+    }
+
+    // Mirrors findDue and countByStatus over a plain list, saves are no-ops on the same instances
+    @SuppressWarnings("unchecked")
+    private EmailOutboxRepository inMemoryRepository() {
+        EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+        when(repository.findDue(any(), any(), any())).thenAnswer(invocation -> {
+            EmailStatusEnum status = invocation.getArgument(0);
+            LocalDateTime now = invocation.getArgument(1);
+            Pageable pageable = invocation.getArgument(2);
+            return outbox.stream()
+                    .filter(email -> email.getStatus() == status && !email.getNextAttemptAt().isAfter(now))
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+        when(repository.saveAll(any(Iterable.class))).thenAnswer(invocation -> {
+            List<EmailOutbox> saved = new ArrayList<>();
+            ((Iterable<EmailOutbox>) invocation.getArgument(0)).forEach(saved::add);
+            return saved;
+        });
+        when(repository.countByStatus(any())).thenAnswer(invocation ->
+                outbox.stream().filter(email -> email.getStatus() == invocation.getArgument(0)).count());
+        return repository;
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
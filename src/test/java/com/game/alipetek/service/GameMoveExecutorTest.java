@@ -0,0 +1,76 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GameMoveExecutorTest {
+
+    private GameMoveExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new GameMoveExecutor(new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    void runsMovesOfOneGameInOrder() throws InterruptedException {
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        IntStream.range(0, 1000).forEach(i -> executor.submit(1L, () -> applied.add(i)));
+        executor.submit(1L, done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(applied).containsExactlyElementsOf(IntStream.range(0, 1000).boxed().toList());
+    }
+
+    @Test
+    void aBlockedGameDoesNotHoldUpOtherGames() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        // Stands in for a slow query or a wait for a pooled connection
+        executor.submit(1L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        for (long gameId = 2; gameId < 100; gameId++) {
+            long id = gameId;
+            assertThat(executor.execute(gameId, () -> id)).isEqualTo(id);
+        }
+        release.countDown();
+        assertThat(executor.execute(1L, () -> "after")).isEqualTo("after");
+    }
+
+    @Test
+    void runsANestedMoveForTheSameGameInline() {
+        String result = executor.execute(7L, () -> executor.execute(7L, () -> "nested"));
+
+        assertThat(result).isEqualTo("nested");
+    }
+
+    @Test
+    void rethrowsTheMoveException() {
+        assertThatThrownBy(() -> executor.execute(3L, () -> {
+            throw new IllegalStateException("bad move");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("bad move");
+    }
+}
@@ -0,0 +1,137 @@
+package com.game.alipetek.service;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtServiceTest {
+
+    private static final String SECRET = Base64.getEncoder()
+            .encodeToString("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+    // JWT expiry has second precision, so this lives between 2 and 3 seconds
+    private static final long SHORT_EXPIRATION_MS = 3_000;
+    private static final long PAST_SHORT_EXPIRATION_MS = 3_100;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void answersRepeatedTokensFromTheCache() {
+        JwtService jwtService = jwtService(60_000, 100);
+        String token = jwtService.generateToken(user("alice"));
+
+        assertThat(jwtService.extractUsername(token)).isEqualTo("alice");
+        assertThat(jwtService.extractUsername(token)).isEqualTo("alice");
+        assertThat(jwtService.isTokenValid(token, user("alice"))).isTrue();
+
+        assertThat(misses()).isEqualTo(1);
+        assertThat(hits()).isEqualTo(2);
+        assertThat(cacheSize()).isEqualTo(1);
+    }
+
+    @Test
+    void neverServesAnExpiredTokenFromTheCache() throws InterruptedException {
+        JwtService jwtService = jwtService(SHORT_EXPIRATION_MS, 100);
+        String token = jwtService.generateToken(user("alice"));
+        assertThat(jwtService.extractUsername(token)).isEqualTo("alice");
+
+        Thread.sleep(PAST_SHORT_EXPIRATION_MS);
+
+        assertThatThrownBy(() -> jwtService.verifyToken(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(cacheSize()).isZero();
+        assertThat(hits()).isZero();
+    }
+
+    @Test
+    void staysWithinItsBound() {
+        JwtService jwtService = jwtService(60_000, 2);
+        String alice = jwtService.generateToken(user("alice"));
+        String bob = jwtService.generateToken(user("bob"));
+        String carol = jwtService.generateToken(user("carol"));
+
+        jwtService.verifyToken(alice);
+        jwtService.verifyToken(bob);
+        jwtService.verifyToken(carol);
+
+        assertThat(cacheSize()).isLessThanOrEqualTo(2);
+        assertThat(misses()).isEqualTo(3);
+
+        // Whatever was evicted is verified again instead of failing
+        assertThat(jwtService.extractUsername(alice)).isEqualTo("alice");
+        assertThat(jwtService.extractUsername(bob)).isEqualTo("bob");
+        assertThat(jwtService.extractUsername(carol)).isEqualTo("carol");
+        assertThat(cacheSize()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void evictsExpiredEntriesBeforeLiveOnes() throws InterruptedException {
+        JwtService shortLived = jwtService(SHORT_EXPIRATION_MS, 2);
+        String expiring = shortLived.generateToken(user("alice"));
+        shortLived.verifyToken(expiring);
+
+        ReflectionTestUtils.setField(shortLived, "jwtExpiration", 60_000L);
+        String live = shortLived.generateToken(user("bob"));
+        shortLived.verifyToken(live);
+        Thread.sleep(PAST_SHORT_EXPIRATION_MS);
+
+        String newcomer = shortLived.generateToken(user("carol"));
+        shortLived.verifyToken(newcomer);
+        double missesBefore = misses();
+
+        // The expired entry made room, the live one is still cached
+        assertThat(shortLived.extractUsername(live)).isEqualTo("bob");
+        assertThat(misses()).isEqualTo(missesBefore);
+        assertThat(cacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsForgedTokensWithoutCachingThem() {
+        JwtService jwtService = jwtService(60_000, 100);
+        String token = jwtService.generateToken(user("alice"));
+        String forged = token.substring(0, token.lastIndexOf('.') + 1) + "c2lnbmF0dXJl";
+
+        assertThatThrownBy(() -> jwtService.verifyToken(forged)).isInstanceOf(JwtException.class);
+        assertThat(cacheSize()).isZero();
+    }
+
+    private JwtService jwtService(long expirationMillis, int cacheSize) {
+        JwtService jwtService = new JwtService(meterRegistry);
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", expirationMillis);
+        ReflectionTestUtils.setField(jwtService, "cacheSize", cacheSize);
+        jwtService.init();
+        return jwtService;
+    }
+
+    private double hits() {
+        return meterRegistry.counter("jwt.cache.hits").count();
+    }
+
+    private double misses() {
+        return meterRegistry.counter("jwt.cache.misses").count();
+    }
+
+    private double cacheSize() {
+        return meterRegistry.get("jwt.cache.size").gauge().value();
+    }
+
+    private static UserDetails user(String username) {
+        return User.withUsername(username).password("secret").roles("USER").build();
+    }
+}
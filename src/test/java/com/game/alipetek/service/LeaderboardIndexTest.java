@@ -0,0 +1,153 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeaderboardIndexTest {
+
+    // Same order as the index: highest score first, ties by lower id
+    private static final Comparator<long[]> BY_RANK = Comparator.<long[]>comparingLong(key -> -key[0])
+            .thenComparingLong(key -> key[1]);
+
+    private final LeaderboardIndex index = new LeaderboardIndex();
+
+    @Test
+    void ranksPlayersByScore() {
+        index.update(1L, "alice", null, 10);
+        index.update(2L, "bob", null, 30);
+        index.update(3L, "carol", null, 20);
+
+        assertThat(index.find(2L).getRank()).isEqualTo(1);
+        assertThat(index.find(3L).getRank()).isEqualTo(2);
+        assertThat(index.find(1L).getRank()).isEqualTo(3);
+        assertThat(index.find(4L)).isNull();
+    }
+
+    @Test
+    void breaksTiesByLowerId() {
+        index.update(7L, "g", null, 50);
+        index.update(3L, "c", null, 50);
+        index.update(5L, "e", null, 50);
+
+        assertThat(ids(index.range(1, 10))).containsExactly(3L, 5L, 7L);
+    }
+
+    @Test
+    void rerankedWhenTheScoreChanges() {
+        index.update(1L, "alice", null, 10);
+        index.update(2L, "bob", null, 20);
+
+        index.update(1L, "alice", "avatar.png", 30);
+
+        LeaderboardEntry alice = index.find(1L);
+        assertThat(alice.getRank()).isEqualTo(1);
+        assertThat(alice.getScore()).isEqualTo(30);
+        assertThat(alice.getAvatarUrl()).isEqualTo("avatar.png");
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void rangeIsBoundedByTheIndex() {
+        for (long id = 1; id <= 5; id++) {
+            index.update(id, "p" + id, null, (int) (100 - id));
+        }
+
+        assertThat(ids(index.range(2, 2))).containsExactly(2L, 3L);
+        assertThat(ids(index.range(4, 10))).containsExactly(4L, 5L);
+        assertThat(index.range(6, 10)).isEmpty();
+        assertThat(index.range(0, 10)).isEmpty();
+        assertThat(ids(index.around(1L, 2))).containsExactly(1L, 2L, 3L);
+        assertThat(ids(index.around(4L, 1))).containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void removesPlayers() {
+        index.update(1L, "alice", null, 10);
+        index.update(2L, "bob", null, 20);
+        index.update(3L, "carol", null, 30);
+
+        index.remove(2L);
+        index.remove(42L);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.find(2L)).isNull();
+        assertThat(index.find(1L).getRank()).isEqualTo(2);
+        assertThat(index.removeLast()).isEqualTo(1L);
+        assertThat(index.removeLast()).isEqualTo(3L);
+        assertThat(index.removeLast()).isNull();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void removeLastOnAnEmptyIndexReturnsNull() {
+        assertThat(index.removeLast()).isNull();
+        assertThat(index.range(1, 10)).isEmpty();
+    }
+
+    @Test
+    void matchesASortedMapUnderRandomOperations() {
+        Random random = new Random(42);
+        TreeMap<long[], Long> expected = new TreeMap<>(BY_RANK);
+        Map<Long, Integer> scores = new HashMap<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            long id = random.nextInt(500);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                int score = random.nextInt(200);
+                Integer previous = scores.put(id, score);
+                if (previous != null) {
+                    expected.remove(new long[]{previous, id});
+                }
+                expected.put(new long[]{score, id}, id);
+                index.update(id, "p" + id, null, score);
+            } else if (operation < 9) {
+                Integer previous = scores.remove(id);
+                if (previous != null) {
+                    expected.remove(new long[]{previous, id});
+                }
+                index.remove(id);
+            } else {
+                Long last = index.removeLast();
+                if (expected.isEmpty()) {
+                    assertThat(last).isNull();
+                } else {
+                    assertThat(last).isEqualTo(expected.pollLastEntry().getValue());
+                    scores.remove(last);
+                }
+            }
+
+            if (step % 500 == 0) {
+                assertMatches(expected, random);
+            }
+        }
+        assertMatches(expected, random);
+    }
+
+    private void assertMatches(TreeMap<long[], Long> expected, Random random) {
+        List<Long> expectedIds = new ArrayList<>(expected.values());
+        assertThat(index.size()).isEqualTo(expectedIds.size());
+        assertThat(ids(index.range(1, expectedIds.size()))).isEqualTo(expectedIds);
+
+        if (!expectedIds.isEmpty()) {
+            int rank = 1 + random.nextInt(expectedIds.size());
+            Long id = expectedIds.get(rank - 1);
+            assertThat(index.find(id).getRank()).isEqualTo(rank);
+            assertThat(ids(index.range(rank, 3))).isEqualTo(expectedIds.subList(rank - 1, Math.min(rank + 2, expectedIds.size())));
+        }
+    }
+
+    private static List<Long> ids(List<LeaderboardEntry> entries) {
+        return entries.stream().map(LeaderboardEntry::getId).toList();
+    }
+}
@@ -0,0 +1,54 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitServiceTest {
+
+    private static final int USER_LIMIT = 3;
+    private static final int IP_LIMIT = 5;
+
+    private RateLimitService rateLimitService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitService = new RateLimitService(new TokenBucketRateLimiter(), meterRegistry);
+        ReflectionTestUtils.setField(rateLimitService, "enabled", true);
+        ReflectionTestUtils.setField(rateLimitService, "maxRequestsPerUser", USER_LIMIT);
+        ReflectionTestUtils.setField(rateLimitService, "maxRequestsPerIp", IP_LIMIT);
+    }
+
+    @Test
+    void limitsAUserAcrossAddresses() {
+        for (int i = 0; i < USER_LIMIT; i++) {
+            assertThat(rateLimitService.allowRequest("alice", "10.0.0." + i)).isTrue();
+        }
+        assertThat(rateLimitService.allowRequest("alice", "10.0.0.9")).isFalse();
+        assertThat(meterRegistry.counter("rate.limit.rejected", "channel", "rest").count()).isEqualTo(1);
+    }
+
+    @Test
+    void limitsAnAddressAcrossUsers() {
+        for (int i = 0; i < IP_LIMIT; i++) {
+            assertThat(rateLimitService.allowMessage("player" + i, "10.0.0.1")).isTrue();
+        }
+        assertThat(rateLimitService.allowMessage("player9", "10.0.0.1")).isFalse();
+        assertThat(rateLimitService.allowRequest(null, "10.0.0.1")).isFalse();
+        assertThat(rateLimitService.allowRequest(null, "10.0.0.2")).isTrue();
+    }
+
+    @Test
+    void aUserOverItsLimitDoesNotDrainItsAddress() {
+        for (int i = 0; i < USER_LIMIT + 10; i++) {
+            rateLimitService.allowRequest("alice", "10.0.0.1");
+        }
+        assertThat(rateLimitService.allowRequest("bob", "10.0.0.1")).isTrue();
+        assertThat(rateLimitService.allowRequest("bob", "10.0.0.1")).isTrue();
+    }
+}
@@ -0,0 +1,74 @@
+package com.game.alipetek.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisRateLimiterTest {
+
+    private static final int LIMIT = 3;
+
+    private RedisServer redisServer;
+    private RedisRateLimiter rateLimiter;
+    private SimpleMeterRegistry meterRegistry;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RedisRateLimiter("localhost", port, 4, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        rateLimiter.shutdown();
+        if (redisServer.isActive()) {
+            redisServer.stop();
+        }
+    }
+
+    @Test
+    void admitsUpToTheLimitPerKey() {
+        for (int i = 0; i < LIMIT; i++) {
+            assertThat(rateLimiter.tryAcquire("user:alice", LIMIT)).isTrue();
+        }
+        assertThat(rateLimiter.tryAcquire("user:alice", LIMIT)).isFalse();
+        assertThat(rateLimiter.tryAcquire("user:bob", LIMIT)).isTrue();
+    }
+
+    @Test
+    void reloadsTheScriptAfterRedisForgetsIt() {
+        assertThat(rateLimiter.tryAcquire("ip:10.0.0.1", LIMIT)).isTrue();
+        try (Jedis jedis = new Jedis("localhost", port)) {
+            jedis.scriptFlush();
+        }
+        assertThat(rateLimiter.tryAcquire("ip:10.0.0.1", LIMIT)).isTrue();
+    }
+
+    @Test
+    void failsOpenAndCountsItWhenRedisIsDown() throws IOException {
+        redisServer.stop();
+
+        for (int i = 0; i < LIMIT + 2; i++) {
+            assertThat(rateLimiter.tryAcquire("user:alice", LIMIT)).isTrue();
+        }
+        assertThat(meterRegistry.counter("rate.limit.redis.fail.open").count()).isEqualTo(LIMIT + 2);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
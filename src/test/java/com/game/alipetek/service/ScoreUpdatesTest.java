@@ -0,0 +1,186 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.dto.ScoreChange;
+import com.game.alipetek.model.LeaderboardWindowEnum;
+import com.game.alipetek.model.ScoreSourceEnum;
+import com.game.alipetek.model.User;
+import com.game.alipetek.repository.LeaderboardDailyPointsRepository;
+import com.game.alipetek.repository.LeaderboardPeriodRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+class ScoreUpdatesTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private WindowedLeaderboards windowedLeaderboards;
+    private SimpleMeterRegistry meterRegistry;
+    private ScoreUpdates scoreUpdates;
+    private final List<ScoreChange> published = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, score INT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO users (id, score) VALUES (1, 100), (2, 0)");
+        jdbcTemplate.execute("CREATE TABLE leaderboard_daily_points (game_day DATE NOT NULL, user_id BIGINT NOT NULL, "
+                + "points BIGINT NOT NULL, PRIMARY KEY (game_day, user_id))");
+
+        meterRegistry = new SimpleMeterRegistry();
+        windowedLeaderboards = new WindowedLeaderboards(meterRegistry, mock(LeaderboardDailyPointsRepository.class),
+                mock(LeaderboardPeriodRepository.class), "UTC", "2025-01-01", 90);
+        ReflectionTestUtils.setField(windowedLeaderboards, "maxPlayers", 1000);
+        ReflectionTestUtils.setField(windowedLeaderboards, "maxPageSize", 100);
+
+        scoreUpdates = new ScoreUpdates(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                event -> published.add((ScoreChange) event), windowedLeaderboards, meterRegistry);
+        ReflectionTestUtils.setField(scoreUpdates, "batchSize", 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void sumsIncrementsPerUserIntoOneWrite() {
+        User alice = user(1L, "alice", 100);
+        User bob = user(2L, "bob", 0);
+
+        scoreUpdates.add(alice, 30, ScoreSourceEnum.ANSWER_POINTS);
+        scoreUpdates.add(alice, 20, ScoreSourceEnum.ANSWER_POINTS);
+        scoreUpdates.add(bob, 10, ScoreSourceEnum.ANSWER_POINTS);
+
+        // Bumped in place for display before anything is written
+        assertThat(alice.getScore()).isEqualTo(150);
+        assertThat(scoreOf(1L)).isEqualTo(100);
+
+        scoreUpdates.flush();
+
+        assertThat(scoreOf(1L)).isEqualTo(150);
+        assertThat(scoreOf(2L)).isEqualTo(10);
+        assertThat(published).extracting(ScoreChange::getUsername, ScoreChange::getDelta, ScoreChange::getScore)
+                .containsExactlyInAnyOrder(
+                        tuple("alice", 50, 150),
+                        tuple("bob", 10, 10));
+        assertThat(meterRegistry.counter("score.updates.flushed").count()).isEqualTo(2);
+    }
+
+    @Test
+    void appliesIncrementsOnTopOfConcurrentWrites() {
+        scoreUpdates.add(user(1L, "alice", 100), 25, ScoreSourceEnum.ANSWER_POINTS);
+        // Another instance committed its own increment in the meantime
+        jdbcTemplate.update("UPDATE users SET score = score + 5 WHERE id = 1");
+
+        scoreUpdates.flush();
+
+        assertThat(scoreOf(1L)).isEqualTo(130);
+        assertThat(published).singleElement().extracting(ScoreChange::getScore).isEqualTo(130);
+    }
+
+    @Test
+    void keepsIncrementsOfAFailedFlushForTheNextRun() {
+        scoreUpdates.add(user(1L, "alice", 100), 40, ScoreSourceEnum.ANSWER_POINTS);
+        jdbcTemplate.execute("ALTER TABLE users RENAME TO users_offline");
+
+        scoreUpdates.flush();
+
+        assertThat(published).isEmpty();
+        assertThat(meterRegistry.counter("score.updates.failed").count()).isEqualTo(1);
+
+        jdbcTemplate.execute("ALTER TABLE users_offline RENAME TO users");
+        scoreUpdates.add(user(1L, "alice", 140), 2, ScoreSourceEnum.ANSWER_POINTS);
+        scoreUpdates.flush();
+
+        assertThat(scoreOf(1L)).isEqualTo(142);
+        assertThat(published).singleElement().extracting(ScoreChange::getDelta).isEqualTo(42);
+    }
+
+    @Test
+    void flushesPendingIncrementsOnStop() {
+        scoreUpdates.start();
+        scoreUpdates.add(user(2L, "bob", 0), 7, ScoreSourceEnum.ANSWER_POINTS);
+
+        scoreUpdates.stop();
+
+        assertThat(scoreUpdates.isRunning()).isFalse();
+        assertThat(scoreOf(2L)).isEqualTo(7);
+    }
+
+    @Test
+    void onlyAnswerPointsReachTheWindowedLeaderboards() {
+        scoreUpdates.add(user(1L, "alice", 100), 1000, ScoreSourceEnum.DISCONNECT_AWARD);
+        scoreUpdates.add(user(2L, "bob", 0), 60, ScoreSourceEnum.ANSWER_POINTS);
+
+        assertThat(windowedLeaderboards.getPage(LeaderboardWindowEnum.DAILY, 0, 10))
+                .extracting(LeaderboardEntry::getUsername)
+                .containsExactly("bob");
+
+        scoreUpdates.flush();
+        assertThat(scoreOf(1L)).isEqualTo(1100);
+    }
+
+    @Test
+    void addsAnswerPointsToTheDayRowWithTheScore() {
+        scoreUpdates.add(user(1L, "alice", 100), 30, ScoreSourceEnum.ANSWER_POINTS);
+        scoreUpdates.add(user(1L, "alice", 130), 500, ScoreSourceEnum.DISCONNECT_AWARD);
+        scoreUpdates.flush();
+        scoreUpdates.add(user(1L, "alice", 630), 12, ScoreSourceEnum.ANSWER_POINTS);
+        scoreUpdates.add(user(2L, "bob", 0), 5, ScoreSourceEnum.ANSWER_POINTS);
+        scoreUpdates.flush();
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        assertThat(rankedPointsOf(today, 1L)).isEqualTo(42);
+        assertThat(rankedPointsOf(today, 2L)).isEqualTo(5);
+    }
+
+    @Test
+    void keepsDayPointsOfAFailedFlushForTheNextRun() {
+        scoreUpdates.add(user(1L, "alice", 100), 40, ScoreSourceEnum.ANSWER_POINTS);
+        jdbcTemplate.execute("ALTER TABLE leaderboard_daily_points RENAME TO leaderboard_offline");
+
+        scoreUpdates.flush();
+        assertThat(scoreOf(1L)).isEqualTo(100);
+
+        jdbcTemplate.execute("ALTER TABLE leaderboard_offline RENAME TO leaderboard_daily_points");
+        scoreUpdates.flush();
+
+        assertThat(scoreOf(1L)).isEqualTo(140);
+        assertThat(rankedPointsOf(LocalDate.now(ZoneOffset.UTC), 1L)).isEqualTo(40);
+    }
+
+    private long rankedPointsOf(LocalDate day, long userId) {
+        return jdbcTemplate.queryForObject("SELECT points FROM leaderboard_daily_points WHERE game_day = ? AND user_id = ?",
+                Long.class, day, userId);
+    }
+
+    private int scoreOf(long userId) {
+        return jdbcTemplate.queryForObject("SELECT score FROM users WHERE id = ?", Integer.class, userId);
+    }
+
+    private static User user(long id, String username, int score) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setScore(score);
+        return user;
+    }
+}
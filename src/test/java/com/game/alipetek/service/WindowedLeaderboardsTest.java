@@ -0,0 +1,117 @@
+package com.game.alipetek.service;
+
+import com.game.alipetek.dto.LeaderboardEntry;
+import com.game.alipetek.dto.LeaderboardPeriodSummary;
+import com.game.alipetek.model.LeaderboardPeriod;
+import com.game.alipetek.model.LeaderboardWindowEnum;
+import com.game.alipetek.model.User;
+import com.game.alipetek.repository.LeaderboardDailyPointsRepository;
+import com.game.alipetek.repository.LeaderboardPeriodRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WindowedLeaderboardsTest {
+
+    private LeaderboardDailyPointsRepository dailyPointsRepository;
+    private LeaderboardPeriodRepository periodRepository;
+    private WindowedLeaderboards windowedLeaderboards;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        dailyPointsRepository = mock(LeaderboardDailyPointsRepository.class);
+        periodRepository = mock(LeaderboardPeriodRepository.class);
+        windowedLeaderboards = new WindowedLeaderboards(new SimpleMeterRegistry(), dailyPointsRepository, periodRepository,
+                "UTC", "2025-01-01", 90);
+        ReflectionTestUtils.setField(windowedLeaderboards, "maxPlayers", 2);
+        ReflectionTestUtils.setField(windowedLeaderboards, "maxPageSize", 100);
+        ReflectionTestUtils.setField(windowedLeaderboards, "historySize", 8);
+        ReflectionTestUtils.setField(windowedLeaderboards, "summaryTopSize", 10);
+        today = LocalDate.now(ZoneOffset.UTC);
+    }
+
+    @Test
+    void rebuildsTheRunningPeriodsAtStartup() {
+        LocalDate weekStart = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        when(dailyPointsRepository.sumByPlayer(any(), any())).thenReturn(List.of());
+        when(dailyPointsRepository.sumByPlayer(weekStart, weekStart.plusWeeks(1))).thenReturn(List.of(
+                new LeaderboardEntry(1L, "alice", null, 40),
+                new LeaderboardEntry(2L, "bob", null, 90),
+                new LeaderboardEntry(3L, "carol", null, 10)));
+        LeaderboardPeriod lastWeek = LeaderboardPeriod.builder()
+                .window(LeaderboardWindowEnum.WEEKLY)
+                .periodStart(weekStart.minusWeeks(1))
+                .periodEnd(weekStart)
+                .players(1)
+                .totalPoints(70)
+                .top(List.of(new LeaderboardEntry(4L, 1, "dave", null, 70)))
+                .build();
+        when(periodRepository.findByWindowOrderByPeriodStartDesc(eq(LeaderboardWindowEnum.WEEKLY), any(Pageable.class)))
+                .thenReturn(List.of(lastWeek));
+
+        windowedLeaderboards.restore();
+
+        // Trimmed to max-players, the lowest ranked player goes
+        assertThat(windowedLeaderboards.getPage(LeaderboardWindowEnum.WEEKLY, 0, 10))
+                .extracting(LeaderboardEntry::getUsername, LeaderboardEntry::getRank, LeaderboardEntry::getScore)
+                .containsExactly(tuple("bob", 1, 90), tuple("alice", 2, 40));
+        assertThat(windowedLeaderboards.getHistory(LeaderboardWindowEnum.WEEKLY))
+                .extracting(LeaderboardPeriodSummary::getPeriodStart, LeaderboardPeriodSummary::getTotalPoints)
+                .containsExactly(tuple(weekStart.minusWeeks(1), 70L));
+
+        // Points recorded after the restore land on top of the restored ones
+        windowedLeaderboards.record(user(1L, "alice"), 60);
+        assertThat(windowedLeaderboards.getRank(LeaderboardWindowEnum.WEEKLY, 1L))
+                .get().extracting(LeaderboardEntry::getRank, LeaderboardEntry::getScore)
+                .containsExactly(1, 100);
+    }
+
+    @Test
+    void savesTheSummaryOfARolledOverPeriodOnTheNextCheck() {
+        windowedLeaderboards.record(user(1L, "alice"), 25);
+        // Pretend the running day started yesterday
+        Object daily = ((Map<?, ?>) ReflectionTestUtils.getField(windowedLeaderboards, "windows"))
+                .get(LeaderboardWindowEnum.DAILY);
+        ReflectionTestUtils.setField(daily, "periodStart", today.minusDays(1));
+
+        windowedLeaderboards.rollOver();
+
+        verify(periodRepository).save(argThat(period ->
+                period.getWindow() == LeaderboardWindowEnum.DAILY
+                        && period.getPeriodStart().equals(today.minusDays(1))
+                        && period.getTotalPoints() == 25
+                        && period.getTop().get(0).getUsername().equals("alice")));
+
+        // Days are pruned once per change of the oldest running period, the summary is not written twice
+        windowedLeaderboards.rollOver();
+        verify(dailyPointsRepository, times(1)).deleteBefore(any());
+        verify(periodRepository, times(1)).save(any());
+    }
+
+    private static User user(long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}